@@ -51,10 +51,8 @@ public class CreateUserSample extends ServerSideScript {
     // We received a message (sent via system.script.createUser, for example)
 
     // Extracts the intended recipient from this message as a Java String
-    Enumeration e = msg.m_recptID.m_stringlist.elements();
     String recpt = "";
-    while (e.hasMoreElements()) {
-      MUSMsgHeaderString MUSrecpt = (MUSMsgHeaderString) e.nextElement();
+    for (MUSMsgHeaderString MUSrecpt : msg.m_recptID.m_stringlist) {
       recpt = MUSrecpt.toString();
     }
 
@@ -0,0 +1,95 @@
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding and encoding throughput for message contents shaped like typical game state:
+ * a property list with a list of player property lists, each holding strings, numbers, points and a small list,
+ * and a board made of one large list of integers.
+ * Run with: gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LValueDecodeBenchmark {
+
+  @Param({"4", "32"})
+  int players;
+
+  LValue state;
+  byte[] raw;
+
+  LValue board;
+  byte[] boardRaw;
+
+  @Setup
+  public void setup() {
+    LList playerList = new LList();
+    for (int p = 0; p < players; p++) {
+      LPropList player = new LPropList();
+      player.addElement(new LSymbol("name"), new LString("Player " + p));
+      player.addElement(new LSymbol("pos"), new LPoint(new LInteger(p * 10), new LInteger(p * 20)));
+      player.addElement(new LSymbol("score"), new LInteger(p * 100));
+      player.addElement(new LSymbol("health"), new LFloat(0.75));
+      LList inventory = new LList();
+      for (int i = 0; i < 5; i++) {
+        inventory.addElement(new LInteger(i));
+      }
+      player.addElement(new LSymbol("inventory"), inventory);
+      playerList.addElement(player);
+    }
+
+    LPropList root = new LPropList();
+    root.addElement(new LSymbol("tick"), new LInteger(123456));
+    root.addElement(new LSymbol("map"), new LString("level3"));
+    root.addElement(new LSymbol("players"), playerList);
+    state = root;
+
+    ByteBuf buf = Unpooled.buffer(root.encodedSize());
+    root.writeTo(buf);
+    raw = buf.array();
+
+    LList cells = new LList();
+    for (int c = 0; c < 4096; c++) {
+      cells.addElement(new LInteger(c % 7));
+    }
+    board = cells;
+    boardRaw = cells.getBytes();
+  }
+
+  @Benchmark
+  public LValue decode() {
+    return LValue.fromRawBytes(raw, 0);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return state.getBytes();
+  }
+
+  @Benchmark
+  public LValue decodeBoard() {
+    return LValue.fromRawBytes(boardRaw, 0);
+  }
+
+  @Benchmark
+  public byte[] encodeBoard() {
+    return board.getBytes();
+  }
+}
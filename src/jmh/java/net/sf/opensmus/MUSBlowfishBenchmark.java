@@ -0,0 +1,75 @@
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encrypting a message with the precalculated keystream against the block by block path.
+ * Run with: gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MUSBlowfishBenchmark {
+
+  private static final String KEY = "IPAddress resolution";
+
+  @Param({"64", "1024", "16384"})
+  int size;
+
+  @Param({"heap", "direct"})
+  String buffer;
+
+  MUSBlowfishCypher keystream;
+  MUSBlowfishCypher perBlock;
+  ByteBuf data;
+
+  @Setup
+  public void setup() {
+    MUSBlowfishCypher.initGlobalBoxes(KEY, 16384);
+    keystream = new MUSBlowfishCypher(); // Global key, uses the keystream
+    perBlock = new MUSBlowfishCypher(KEY.getBytes()); // Same key, always block by block
+
+    data = buffer.equals("direct") ? Unpooled.directBuffer(size) : Unpooled.buffer(size);
+    for (int i = 0; i < size; i++) {
+      data.writeByte(i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    data.release();
+  }
+
+  @Benchmark
+  public ByteBuf keystream() {
+    data.readerIndex(0);
+    keystream.encrypt(data);
+    keystream.reset();
+    return data;
+  }
+
+  @Benchmark
+  public ByteBuf perBlock() {
+    data.readerIndex(0);
+    perBlock.encrypt(data);
+    perBlock.setCBCIV(0); // Only the IV needs resetting, the boxes are never modified
+    return data;
+  }
+}
@@ -0,0 +1,86 @@
+package net.sf.opensmus;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a user joining a few groups and leaving the movie, in a movie with many persistent groups
+ * such as the @RndGroup rooms of a lobby. Leaving the movie removes the user from its groups with MUSMovie.removeUser.
+ * <BR>A server is started on an ephemeral port with logging turned off.
+ * Run with: gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MUSDisconnectBenchmark {
+
+  @Param({"50000"})
+  int groups;
+
+  @Param({"4"})
+  int joined;
+
+  MUSServer server;
+  MUSMovie movie;
+  MUSUser user;
+  MUSGroup[] rooms;
+
+  @Setup
+  public void setup() {
+    MUSServerProperties props = new MUSServerProperties();
+    props.m_props.put("ServerPort", "0");
+    props.m_props.put("ServerOutputToLogFile", "0");
+    for (String events : new String[]{"Server", "Movie", "Group", "User", "DB"}) {
+      props.m_props.put("Log" + events + "Events", "0");
+    }
+    server = new MUSServer(props);
+
+    movie = new MUSMovie(server, "lobby");
+    movie.setpersists(true);
+    rooms = new MUSGroup[groups];
+    for (int g = 0; g < groups; g++) {
+      rooms[g] = new MUSGroup(movie, "@RndGroup" + g);
+      rooms[g].setpersists(true);
+    }
+
+    // Users read their IP address from the channel
+    user = new MUSUser(server, new EmbeddedChannel() {
+      @Override
+      public SocketAddress remoteAddress() {
+        return new InetSocketAddress("127.0.0.1", 50000);
+      }
+    });
+    user.m_name = "player1";
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.killServer();
+  }
+
+  @Benchmark
+  public void joinAndDisconnect() throws MUSErrorCode {
+    movie.addUser(user);
+    for (int g = 0; g < joined; g++) {
+      rooms[g * (groups / joined)].addUser(user);
+    }
+    movie.removeUser(user);
+  }
+}
@@ -0,0 +1,87 @@
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The message path of a user to group relay: a received frame is read into a message, forwarded to the group,
+ * encoded once and written to every member, the same way IOHandler, MUSMovie.handleGroupMsg and MUSGroup.sendMessage do.
+ * Run with: gradlew jmh, with the gc profiler (-prof gc) to check that the steady state does not allocate.
+ * <BR>The Netty leak detector is disabled, as it records a stack trace for a sample of the buffers allocated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dio.netty.leakDetection.level=disabled")
+public class MUSRelayBenchmark {
+
+  @Param({"16"})
+  int members;
+
+  final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+  final MUSMsgHeaderString sender = new MUSMsgHeaderString("player1");
+  final MUSMsgHeaderString group = new MUSMsgHeaderString("@lobby");
+
+  ByteBuf frame;
+
+  @Setup
+  public void setup() {
+    LPropList content = new LPropList();
+    content.addElement(LSymbol.intern("pos"), new LPoint(LInteger.valueOf(120), LInteger.valueOf(80)));
+    content.addElement(LSymbol.intern("dir"), LInteger.valueOf(3));
+    content.addElement(LSymbol.intern("chat"), new LString("hello everyone"));
+
+    MUSMessage msg = new MUSMessage();
+    msg.m_subject = new MUSMsgHeaderString("move");
+    msg.m_senderID = sender;
+    msg.m_recptID = new MUSMsgHeaderStringList();
+    msg.m_recptID.addElement(group);
+    msg.m_msgContent = content;
+
+    // Received frames don't have the 6 header bytes
+    frame = msg.encode(alloc, true);
+    frame.skipBytes(6);
+    frame.discardReadBytes();
+  }
+
+  @TearDown
+  public void tearDown() {
+    frame.release();
+  }
+
+  @Benchmark
+  public void relayToGroup() {
+    frame.readerIndex(0);
+    MUSMessage msg = MUSMessage.newReceived(frame, sender, true);
+    try {
+      MUSMessage fwd = msg.forward(group, 42);
+      try {
+        ByteBuf encoded = fwd.encode(alloc, true);
+        for (int m = 0; m < members; m++) {
+          encoded.retainedDuplicate().release(); // Written and released by the channel of each member
+        }
+        encoded.release();
+      } finally {
+        fwd.release();
+      }
+    } finally {
+      msg.release();
+    }
+  }
+}
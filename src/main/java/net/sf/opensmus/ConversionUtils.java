@@ -46,6 +46,9 @@
 
 package net.sf.opensmus;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Collection of static methods for data conversion.
  * Data is treated in network byte order.
@@ -58,6 +61,50 @@ public class ConversionUtils {
   final static char[] HEXTAB = {'0', '1', '2', '3', '4', '5', '6', '7',
           '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
 
+  // Charset of the strings in messages, set from the MessageCharset server property
+  private static volatile Charset s_messageCharset = Charset.defaultCharset();
+  private static volatile boolean s_asciiCompatible = isAsciiCompatible(s_messageCharset);
+
+  public static void setMessageCharset(Charset charset) {
+    s_asciiCompatible = isAsciiCompatible(charset);
+    s_messageCharset = charset;
+  }
+
+  public static Charset getMessageCharset() {
+    return s_messageCharset;
+  }
+
+  /**
+   * Decodes the bytes of a message string with the message charset.
+   * ASCII only strings are copied directly when the charset is a superset of ASCII.
+   */
+  public static String decodeString(byte[] data) {
+    if (s_asciiCompatible && isAscii(data)) return new String(data, StandardCharsets.ISO_8859_1);
+    return new String(data, s_messageCharset);
+  }
+
+  /**
+   * Encodes a string to message bytes with the message charset.
+   */
+  public static byte[] encodeString(String s) {
+    return s.getBytes(s_messageCharset);
+  }
+
+  private static boolean isAscii(byte[] data) {
+    for (byte b : data) {
+      if (b < 0) return false;
+    }
+    return true;
+  }
+
+  private static boolean isAsciiCompatible(Charset charset) {
+    byte[] ascii = new byte[128];
+    for (int n = 0; n < ascii.length; n++) {
+      ascii[n] = (byte) n;
+    }
+    return new String(ascii, charset).equals(new String(ascii, StandardCharsets.ISO_8859_1));
+  }
+
   public static long byteArrayToLong(byte[] buffer,
                                      int nStartIndex) {
     return (((long) buffer[nStartIndex]) << 56) |
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible 3dTransform value (L3dTransform for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -118,18 +120,15 @@ public class L3dTransform extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-//        int tint = 0;
-//
-//        for (int i = 0; i < 16; i++) {
-//            tint = ConversionUtils.byteArrayToInt(rawBytes, offset);
-//            m_floats[i] = Float.intBitsToFloat(tint);
-//            offset = offset + 4;
-//        }
-
-    System.arraycopy(rawBytes, offset, m_bytes, 0, 64);
-
-    return 64;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    buffer.readBytes(m_bytes, 0, 64);
   }
 
   /**
@@ -166,4 +165,21 @@ public class L3dTransform extends LValue {
 
     return finalbytes;
   }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 66;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(getType());
+    buffer.writeBytes(m_bytes);
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible Vector value (L3dVector for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -74,18 +76,15 @@ public class L3dVector extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-//        int tint = 0;
-//
-//        for (int i = 0; i < 3; i++) {
-//            tint = ConversionUtils.byteArrayToInt(rawBytes, offset);
-//            m_floats[i] = Float.intBitsToFloat(tint);
-//            offset = offset + 4;
-//        }
-
-    System.arraycopy(rawBytes, offset, bytes, 0, 12);
-    return 12;
-
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    buffer.readBytes(bytes, 0, 12);
   }
 
   /**
@@ -124,4 +123,20 @@ public class L3dVector extends LValue {
     return finalbytes;
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 14;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(getType());
+    buffer.writeBytes(bytes);
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible color value (LColor for short)
  * Color values are stored and retrieved as an opaque array of bytes
@@ -67,9 +69,15 @@ public class LColor extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    System.arraycopy(rawBytes, offset, bytes, 0, 4);
-    return 4;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    buffer.readBytes(bytes, 0, 4);
   }
 
   /**
@@ -99,4 +107,21 @@ public class LColor extends LValue {
     // Not entirely sure about the byte meanings here... rgb+a?
     return ("color(" + bytes[0] + ", " + bytes[1] + ", " + bytes[2] + ")");
   }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 6;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Color);
+    buffer.writeBytes(bytes, 0, 4);
+  }
 }
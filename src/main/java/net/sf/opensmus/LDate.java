@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 import java.util.Date;
 
 /**
@@ -101,9 +103,15 @@ public class LDate extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    System.arraycopy(rawBytes, offset, bytes, 0, 8);
-    return 8;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    buffer.readBytes(bytes, 0, 8);
   }
 
   /**
@@ -135,4 +143,20 @@ public class LDate extends LValue {
     return toDate().toString();
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 10;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Date);
+    buffer.writeBytes(bytes, 0, 8);
+  }
 }
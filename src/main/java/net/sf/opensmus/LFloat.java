@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible Float value (LFloat for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -63,12 +65,15 @@ public class LFloat extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    System.arraycopy(rawBytes, offset, bytes, 0, 8);
-    return 8;
-
-    // long tlong = ConversionUtils.byteArrayToLong(rawBytes, offset);
-    //m_float = Double.longBitsToDouble(tlong);
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    buffer.readBytes(bytes, 0, 8);
   }
 
   /**
@@ -110,4 +115,20 @@ public class LFloat extends LValue {
     return Double.toString(toDouble());
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 10;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Float);
+    buffer.writeBytes(bytes);
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible integer value (LInteger for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -37,15 +39,30 @@ public class LInteger extends LValue {
 
   // private int m_integer;
   private final byte[] bytes;
+  private final boolean shared; // Cached by valueOf(), must never change
+
+  private static final int CACHE_LOW = -128;
+  private static final LInteger[] CACHE = new LInteger[1024 - CACHE_LOW];
+
+  static {
+    for (int n = 0; n < CACHE.length; n++) {
+      CACHE[n] = new LInteger(n + CACHE_LOW, true);
+    }
+  }
 
   /**
    * Constructor
    */
   public LInteger(int initInt) {
+    this(initInt, false);
+  }
+
+  private LInteger(int initInt, boolean cached) {
     // m_integer = initInt;
     bytes = new byte[4];
     ConversionUtils.intToByteArray(initInt, bytes, 0);
     setType(LValue.vt_Integer);
+    shared = cached;
   }
 
   /**
@@ -55,6 +72,18 @@ public class LInteger extends LValue {
     // m_integer = 0;
     bytes = new byte[4];
     setType(LValue.vt_Integer);
+    shared = false;
+  }
+
+  /**
+   * Returns an LInteger for a value, shared between callers for small values.
+   * Use this instead of the constructor for values that are only written to messages.
+   * The shared values can't be decoded into: extractFromBytes(), readFrom() and setType() throw an
+   * UnsupportedOperationException.
+   */
+  public static LInteger valueOf(int value) {
+    if (value >= CACHE_LOW && value < CACHE_LOW + CACHE.length) return CACHE[value - CACHE_LOW];
+    return new LInteger(value);
   }
 
   /**
@@ -62,9 +91,31 @@ public class LInteger extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
-    //m_integer = ConversionUtils.byteArrayToInt(rawBytes, offset);
-    System.arraycopy(rawBytes, offset, bytes, 0, 4);
-    return 4;
+    checkNotShared();
+    return extractWithReadFrom(rawBytes, offset);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    checkNotShared();
+    buffer.readBytes(bytes, 0, 4);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void setType(short type) {
+    checkNotShared();
+    super.setType(type);
+  }
+
+  private void checkNotShared() {
+    if (shared)
+      throw new UnsupportedOperationException("LInteger " + this + " is shared by valueOf() and can't be changed, use new LInteger()");
   }
 
   /**
@@ -102,4 +153,20 @@ public class LInteger extends LValue {
     MUSLog.Log("Integer> " + this.toInteger(), MUSLog.kDeb);
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 6;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Integer);
+    buffer.writeBytes(bytes);
+  }
 }
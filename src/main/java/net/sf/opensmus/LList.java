@@ -29,10 +29,9 @@
 
 package net.sf.opensmus;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.util.Vector;
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
 
 /**
  * Class representing a Lingo compatible List value (LList for short).
@@ -41,15 +40,20 @@ import java.util.Vector;
 public class LList extends LValue {
 
   /**
-   * Public vector element storing the list members as LValues
+   * Public list storing the list members as LValues.
+   * <BR>Lists of integers are stored packed, and their elements are created when they are read, so the same
+   * element read twice may be two equal objects. Elements of other lists are stored as they are, so they can be
+   * changed in place.
    */
-  public final Vector<LValue> m_list;
+  public final List<LValue> m_list;
+  private final LValueList m_values;
 
   /**
    * Constructor
    */
   public LList() {
-    m_list = new Vector<>();
+    m_values = new LValueList();
+    m_list = m_values;
     setType(LValue.vt_List);
   }
 
@@ -59,7 +63,7 @@ public class LList extends LValue {
    * @param elem LValue to add
    */
   public void addElement(LValue elem) {
-    m_list.addElement(elem);
+    m_list.add(elem);
   }
 
   /**
@@ -67,37 +71,18 @@ public class LList extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
-    int numOfElems = ConversionUtils.byteArrayToInt(rawBytes, offset);
-    int chunkSize = 4;
-    short elemType;
-    LValue newVal;
-    for (int i = 0; i < numOfElems; i++) {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Symbol -> new LSymbol();
-        case LValue.vt_String -> new LString();
-        case LValue.vt_Picture -> new LPicture();
-        case LValue.vt_Float -> new LFloat();
-        case LValue.vt_List -> new LList();
-        case LValue.vt_Point -> new LPoint();
-        case LValue.vt_Rect -> new LRect();
-        case LValue.vt_PropList -> new LPropList();
-        case LValue.vt_Color -> new LColor();
-        case LValue.vt_Date -> new LDate();
-        case LValue.vt_Media -> new LMedia();
-        case LValue.vt_3dVector -> new L3dVector();
-        case LValue.vt_3dTransform -> new L3dTransform();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_list.addElement(newVal);
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    int numOfElems = LValueCodec.readCount(buffer, 2); // Every element has a type identifier
+    for (int i = 0; i < numOfElems; i++) {
+      m_values.readElement(buffer);
     }
-    return chunkSize;
-
   }
 
   /**
@@ -134,7 +119,7 @@ public class LList extends LValue {
    * @return LValue
    */
   public LValue getElementAt(int pos) {
-    return m_list.elementAt(pos);
+    return m_list.get(pos);
   }
 
   /**
@@ -148,7 +133,7 @@ public class LList extends LValue {
     if (pos >= m_list.size())
       return false;
 
-    m_list.setElementAt(elem, pos);
+    m_list.set(pos, elem);
     return true;
   }
 
@@ -164,24 +149,30 @@ public class LList extends LValue {
    */
   @Override
   public byte[] getBytes() {
+    return writeToBytes();
+  }
 
-    try {
-      ByteArrayOutputStream bstream = new ByteArrayOutputStream(2);
-      DataOutputStream datastream = new DataOutputStream(bstream);
-
-      datastream.writeShort(vt_List);
-      datastream.writeInt(m_list.size());
-
-      for (LValue elem : m_list) {
-        byte[] elemBytes = elem.getBytes();
-        datastream.write(elemBytes, 0, elemBytes.length);
-      }
-
-      return bstream.toByteArray();
-    } catch (IOException e) {
-      MUSLog.Log("Error in LList stream", MUSLog.kSys);
-      return "0".getBytes();
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    int size = 6; // Type identifier & element count
+    for (int n = 0; n < m_values.size(); n++) {
+      size += m_values.elementSize(n);
     }
+    return size;
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_List);
+    buffer.writeInt(m_values.size());
+    for (int n = 0; n < m_values.size(); n++) {
+      m_values.writeElementTo(n, buffer);
+    }
+  }
 }
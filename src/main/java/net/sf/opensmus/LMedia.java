@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible media value (LMedia for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -58,23 +60,26 @@ public class LMedia extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    int byteSize = ConversionUtils.byteArrayToInt(rawBytes, offset);
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    int byteSize = buffer.readInt();
 
     // Sanity check
-    if (byteSize < 0 || byteSize > (rawBytes.length - offset - 4)) {
-      MUSLog.Log("Media size error : " + byteSize + " " + rawBytes.length + " " + ConversionUtils.bytesToBinHex(rawBytes), MUSLog.kDeb);
-      throw new NullPointerException("Media size error " + byteSize + " " + rawBytes.length);
+    if (byteSize < 0 || byteSize > buffer.readableBytes()) {
+      MUSLog.Log("Media size error : " + byteSize + " " + buffer.readableBytes(), MUSLog.kDeb);
+      throw new LValueDecodeException("Media size error " + byteSize + " " + buffer.readableBytes());
     }
 
     m_media = new byte[byteSize];
-    System.arraycopy(rawBytes, 4 + offset, m_media, 0, byteSize);
+    buffer.readBytes(m_media);
 
-    int chunkSize = 4 + m_media.length;
-
-    if ((byteSize % 2) != 0) chunkSize++;
-
-    return chunkSize;
+    if ((byteSize % 2) != 0 && buffer.isReadable()) buffer.skipBytes(1);
   }
 
   /**
@@ -114,4 +119,24 @@ public class LMedia extends LValue {
   public void dump() {
     MUSLog.Log("Media> " + ConversionUtils.bytesToBinHex(m_media), MUSLog.kDeb);
   }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 6 + m_media.length + (m_media.length % 2);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(getType());
+    buffer.writeInt(m_media.length);
+    buffer.writeBytes(m_media);
+
+    if ((m_media.length % 2) != 0) buffer.writeByte(0);
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible Point value (LPoint for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -67,41 +69,32 @@ public class LPoint extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    short elemType;
-    LValue newVal;
-    int chunkSize = 0;
-    // First element X
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_X = newVal;
-    }
-
-    // Second element Y
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_Y = newVal;
-    }
-    return chunkSize;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    m_X = readCoordinate(buffer);
+    m_Y = readCoordinate(buffer);
+  }
+
+  // Coordinates of points and rects can only be integers or floats
+  static LValue readCoordinate(ByteBuf buffer) {
+
+    LValue newVal = switch (buffer.readShort()) {
+      case LValue.vt_Integer -> new LInteger();
+      case LValue.vt_Float -> new LFloat();
+      default -> null;
+    };
 
+    if (newVal == null)
+      return LVoid.VOID; // No data to decode
+
+    newVal.readFrom(buffer);
+    return newVal;
   }
 
   @Override
@@ -126,15 +119,24 @@ public class LPoint extends LValue {
    */
   @Override
   public byte[] getBytes() {
-    byte[] pX = m_X.getBytes();
-    byte[] pY = m_Y.getBytes();
-
-    byte[] finalbytes = new byte[2 + pX.length + pY.length];
-    ConversionUtils.shortToByteArray(vt_Point, finalbytes, 0);
-    System.arraycopy(pX, 0, finalbytes, 2, pX.length);
-    System.arraycopy(pY, 0, finalbytes, 2 + pX.length, pY.length);
+    return writeToBytes();
+  }
 
-    return finalbytes;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 2 + m_X.encodedSize() + m_Y.encodedSize();
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Point);
+    m_X.writeTo(buffer);
+    m_Y.writeTo(buffer);
+  }
 }
@@ -29,11 +29,10 @@
 
 package net.sf.opensmus;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import io.netty.buffer.ByteBuf;
+
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.List;
 
 /**
  * Class representing a Lingo compatible List value (LList for short).
@@ -42,20 +41,31 @@ import java.util.Vector;
 public class LPropList extends LValue {
 
   /**
-   * Public vector element storing the property names as LSymbols
+   * Public list storing the property names as LSymbols.
+   * The lookup index of getElement() is rebuilt after any change to this list.
    */
-  public final Vector<LValue> m_proplist;
+  public final List<LValue> m_proplist;
   /**
-   * Public vector element storing the list members as LValues
+   * Public list storing the list members as LValues.
+   * <BR>Values are stored packed like the elements of LList.m_list, with the same rules for reading them.
    */
-  public final Vector<LValue> m_list;
+  public final List<LValue> m_list;
+  private final LValueList m_props;
+  private final LValueList m_values;
+
+  // Lists with more properties than this build a hash index for getElement()
+  private static final int INDEX_THRESHOLD = 8;
+  // Built on the first lookup, replaced after any change to m_proplist
+  private volatile PropIndex m_index;
 
   /**
    * Constructor
    */
   public LPropList() {
-    m_proplist = new Vector<>();
-    m_list = new Vector<>();
+    m_props = new LValueList();
+    m_values = new LValueList();
+    m_proplist = m_props;
+    m_list = m_values;
     setType(LValue.vt_PropList);
   }
 
@@ -66,8 +76,8 @@ public class LPropList extends LValue {
    * @param elem     LValue to add
    */
   public void addElement(LValue property, LValue elem) {
-    m_proplist.addElement(property);
-    m_list.addElement(elem);
+    m_proplist.add(property);
+    m_list.add(elem);
   }
 
 
@@ -78,7 +88,7 @@ public class LPropList extends LValue {
    * @return LValue
    */
   public LValue getElementAt(int pos) {
-    return m_list.elementAt(pos);
+    return m_list.get(pos);
   }
 
   /**
@@ -88,7 +98,7 @@ public class LPropList extends LValue {
    * @return LValue
    */
   public LValue getPropAt(int pos) {
-    return m_proplist.elementAt(pos);
+    return m_proplist.get(pos);
   }
 
   /**
@@ -99,22 +109,40 @@ public class LPropList extends LValue {
    */
   public LValue getElement(LSymbol prop) throws PropertyNotFoundException {
 
-    // Enumeration enume = m_proplist.elements();
-    int idx = 0;
-    // LValue elem;
-    // while (enume.hasMoreElements()) {
-    for (LValue elem : m_proplist) {
-      // elem = (LValue) enume.nextElement();
-      if (elem.getType() != LValue.vt_Symbol) continue;
-      LSymbol sym = (LSymbol) elem;
-      if (prop.toString().equalsIgnoreCase(sym.toString())) {
-        return m_list.elementAt(idx);
-      }
-      idx++;
+    int idx = indexOf(prop);
+    if (idx < 0) throw new PropertyNotFoundException(prop.toString());
+
+    return m_list.get(idx);
+  }
+
+  /**
+   * Returns the position of a property in the list, or -1 if it is not found.
+   * Property names are compared ignoring case, the first matching property is returned.
+   *
+   * @param prop LSymbol representing the property name
+   */
+  public int indexOf(LSymbol prop) {
+
+    int size = m_proplist.size();
+    if (size <= INDEX_THRESHOLD) return scan(prop, size);
+
+    // Any change to the properties, including set() and remove(), changes the modification count
+    int modCount = m_props.modCount();
+    PropIndex index = m_index;
+    if (index == null || index.m_modCount != modCount) {
+      index = new PropIndex(m_proplist, size, modCount);
+      m_index = index;
     }
 
-    // return new LVoid();
-    throw new PropertyNotFoundException(prop.toString());
+    return index.find(prop, m_proplist);
+  }
+
+  private int scan(LSymbol prop, int size) {
+    for (int idx = 0; idx < size; idx++) {
+      LValue elem = m_proplist.get(idx);
+      if (elem.getType() == LValue.vt_Symbol && prop.equalsIgnoreCase((LSymbol) elem)) return idx;
+    }
+    return -1;
   }
 
   /**
@@ -129,64 +157,20 @@ public class LPropList extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
-    int numOfElems = ConversionUtils.byteArrayToInt(rawBytes, offset);
-    int chunkSize = 4;
-    short elemType;
-    LValue newProp;
-    LValue newVal;
-    for (int i = 0; i < numOfElems; i++) {
-      // Extract prop
-      // Extract element type (should be symbol anyway) //corrected to accept any type
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize += 2;
-
-      newProp = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Symbol -> new LSymbol();
-        case LValue.vt_String -> new LString();
-        case LValue.vt_Picture -> new LPicture();
-        case LValue.vt_Float -> new LFloat();
-        case LValue.vt_List -> new LList();
-        case LValue.vt_Point -> new LPoint();
-        case LValue.vt_Rect -> new LRect();
-        case LValue.vt_PropList -> new LPropList();
-        case LValue.vt_Color -> new LColor();
-        case LValue.vt_Date -> new LDate();
-        case LValue.vt_Media -> new LMedia();
-        case LValue.vt_3dVector -> new L3dVector();
-        case LValue.vt_3dTransform -> new L3dTransform();
-        default -> new LVoid();
-      };
-
-      chunkSize = chunkSize + newProp.extractFromBytes(rawBytes, offset + chunkSize);
-      m_proplist.addElement(newProp);
-
-      // Extract element
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize += 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Symbol -> new LSymbol();
-        case LValue.vt_String -> new LString();
-        case LValue.vt_Picture -> new LPicture();
-        case LValue.vt_Float -> new LFloat();
-        case LValue.vt_List -> new LList();
-        case LValue.vt_Point -> new LPoint();
-        case LValue.vt_Rect -> new LRect();
-        case LValue.vt_PropList -> new LPropList();
-        case LValue.vt_Color -> new LColor();
-        case LValue.vt_Date -> new LDate();
-        case LValue.vt_Media -> new LMedia();
-        case LValue.vt_3dVector -> new L3dVector();
-        case LValue.vt_3dTransform -> new L3dTransform();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_list.addElement(newVal);
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    int numOfElems = LValueCodec.readCount(buffer, 4); // Property and value, each with a type identifier
+    for (int i = 0; i < numOfElems; i++) {
+      // Property (should be a symbol, but any type is accepted) and value
+      m_props.readElement(buffer);
+      m_values.readElement(buffer);
     }
-    return chunkSize;
   }
 
   /**
@@ -228,32 +212,70 @@ public class LPropList extends LValue {
    */
   @Override
   public byte[] getBytes() {
+    return writeToBytes();
+  }
 
-    try {
-      ByteArrayOutputStream bstream = new ByteArrayOutputStream(2);
-      DataOutputStream datastream = new DataOutputStream(bstream);
-
-      datastream.writeShort(vt_PropList);
-      datastream.writeInt(m_proplist.size());
-
-      byte[] elemBytes;
-      LValue elem;
-      Enumeration<LValue> enume = m_proplist.elements();
-      Enumeration<LValue> enum2 = m_list.elements();
-      while (enume.hasMoreElements()) {
-        elem = enume.nextElement();
-        elemBytes = elem.getBytes();
-        datastream.write(elemBytes, 0, elemBytes.length);
-        elem = enum2.nextElement();
-        elemBytes = elem.getBytes();
-        datastream.write(elemBytes, 0, elemBytes.length);
-      }
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    int size = 6; // Type identifier & element count
+    for (int n = 0; n < m_proplist.size(); n++) {
+      size += m_props.elementSize(n);
+      size += m_values.elementSize(n);
+    }
+    return size;
+  }
 
-      return bstream.toByteArray();
-    } catch (IOException e) {
-      MUSLog.Log("Error in LPropList stream", MUSLog.kSys);
-      return "0".getBytes();
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_PropList);
+    buffer.writeInt(m_proplist.size());
+    for (int n = 0; n < m_proplist.size(); n++) {
+      m_props.writeElementTo(n, buffer);
+      m_values.writeElementTo(n, buffer);
     }
   }
 
+  /**
+   * Open addressing table from case insensitive property names to their first position in the list.
+   */
+  private static final class PropIndex {
+
+    final int m_modCount; // Of the property list the index was built from
+    private final int[] m_slots; // Position + 1 of each property, 0 for empty slots
+
+    PropIndex(List<LValue> props, int count, int modCount) {
+      m_modCount = modCount;
+      m_slots = new int[Integer.highestOneBit(count) << 2];
+      int mask = m_slots.length - 1;
+      for (int idx = 0; idx < count; idx++) {
+        LValue elem = props.get(idx);
+        if (elem.getType() != LValue.vt_Symbol) continue;
+        LSymbol sym = (LSymbol) elem;
+        int slot = sym.hashIgnoreCase() & mask;
+        while (m_slots[slot] != 0) {
+          if (sym.equalsIgnoreCase((LSymbol) props.get(m_slots[slot] - 1))) break; // Keep the first one
+          slot = (slot + 1) & mask;
+        }
+        if (m_slots[slot] == 0) m_slots[slot] = idx + 1;
+      }
+    }
+
+    // Returns the position, -1 if not found
+    int find(LSymbol prop, List<LValue> props) {
+      int mask = m_slots.length - 1;
+      int slot = prop.hashIgnoreCase() & mask;
+      while (m_slots[slot] != 0) {
+        int idx = m_slots[slot] - 1;
+        if (prop.equalsIgnoreCase((LSymbol) props.get(idx))) return idx;
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible Rect value (LRect for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -74,67 +76,18 @@ public class LRect extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    short elemType;
-    LValue newVal;
-    int chunkSize = 0;
-    // First element X
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_X = newVal;
-    }
-
-    // Second element Y
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_Y = newVal;
-    }
-
-    // Third element W
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_W = newVal;
-    }
-
-    // Fourth element H
-    {
-      elemType = ConversionUtils.byteArrayToShort(rawBytes, offset + chunkSize);
-      chunkSize = chunkSize + 2;
-
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Float -> new LFloat();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, offset + chunkSize);
-      m_H = newVal;
-    }
-    return chunkSize;
-
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    m_X = LPoint.readCoordinate(buffer);
+    m_Y = LPoint.readCoordinate(buffer);
+    m_W = LPoint.readCoordinate(buffer);
+    m_H = LPoint.readCoordinate(buffer);
   }
 
   @Override
@@ -161,25 +114,26 @@ public class LRect extends LValue {
    */
   @Override
   public byte[] getBytes() {
-    byte[] pX = m_X.getBytes();
-    byte[] pY = m_Y.getBytes();
-    byte[] pW = m_W.getBytes();
-    byte[] pH = m_H.getBytes();
-
-    int a = pX.length;
-    int b = pY.length;
-    int c = pW.length;
-    int d = pH.length;
-
-
-    byte[] finalbytes = new byte[2 + a + b + c + d];
-    ConversionUtils.shortToByteArray(vt_Rect, finalbytes, 0);
-    System.arraycopy(pX, 0, finalbytes, 2, a);
-    System.arraycopy(pY, 0, finalbytes, 2 + a, b);
-    System.arraycopy(pW, 0, finalbytes, 2 + a + b, c);
-    System.arraycopy(pH, 0, finalbytes, 2 + a + b + c, d);
+    return writeToBytes();
+  }
 
-    return finalbytes;
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 2 + m_X.encodedSize() + m_Y.encodedSize() + m_W.encodedSize() + m_H.encodedSize();
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Rect);
+    m_X.writeTo(buffer);
+    m_Y.writeTo(buffer);
+    m_W.writeTo(buffer);
+    m_H.writeTo(buffer);
+  }
 }
@@ -29,6 +29,8 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 import java.io.UnsupportedEncodingException;
 
 /**
@@ -38,6 +40,8 @@ import java.io.UnsupportedEncodingException;
 public class LString extends LValue {
 
   private byte[] m_string;
+  private String m_decoded; // Cached toString(), null until first needed
+  private int m_foldedHash; // Cached hashIgnoreCase(), 0 when not computed yet
 
   /**
    * Constructor
@@ -49,7 +53,8 @@ public class LString extends LValue {
     //            m_string = "".getBytes();
     //        else
 
-    m_string = initString.getBytes();
+    m_string = ConversionUtils.encodeString(initString);
+    m_decoded = initString;
 
     setType(LValue.vt_String);
   }
@@ -58,7 +63,8 @@ public class LString extends LValue {
    * Constructor
    */
   public LString() {
-    m_string = "".getBytes();
+    m_string = new byte[0];
+    m_decoded = "";
     setType(LValue.vt_String);
   }
 
@@ -77,23 +83,29 @@ public class LString extends LValue {
    */
   @Override
   public int extractFromBytes(byte[] rawBytes, int offset) {
+    return extractWithReadFrom(rawBytes, offset);
+  }
 
-    int strSize = ConversionUtils.byteArrayToInt(rawBytes, offset); // First 4 bytes = length of string
-    // m_string = new String(rawBytes, 4 + offset, strSize);
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    int strSize = buffer.readInt(); // First 4 bytes = length of string
 
     // Sanity check
-    if (strSize < 0 || strSize > (rawBytes.length - offset - 4)) {
-      MUSLog.Log("String size error : " + strSize + " " + rawBytes.length + " " + ConversionUtils.bytesToBinHex(rawBytes), MUSLog.kDeb);
-      throw new NullPointerException("String size error " + strSize + " " + rawBytes.length);
+    if (strSize < 0 || strSize > buffer.readableBytes()) {
+      MUSLog.Log("String size error : " + strSize + " " + buffer.readableBytes(), MUSLog.kDeb);
+      throw new LValueDecodeException("String size error " + strSize + " " + buffer.readableBytes());
     }
 
     m_string = new byte[strSize];
-    System.arraycopy(rawBytes, 4 + offset, m_string, 0, strSize);
-
-    int chunkSize = 4 + strSize; // m_string.length
-    if ((strSize % 2) != 0) chunkSize++; // Variable byte length sections are padded to even byte boundaries.
+    m_foldedHash = 0;
+    m_decoded = null;
+    buffer.readBytes(m_string);
 
-    return chunkSize;
+    // Variable byte length sections are padded to even byte boundaries.
+    if ((strSize % 2) != 0 && buffer.isReadable()) buffer.skipBytes(1);
   }
 
   /**
@@ -126,16 +138,57 @@ public class LString extends LValue {
   @Override
   public void dump() {
 
-    MUSLog.Log("String> " + new String(m_string), MUSLog.kDeb);
+    MUSLog.Log("String> " + this, MUSLog.kDeb);
   }
 
   /**
    * Returns this LString as a Java String.
+   * The string is decoded with the MessageCharset of the server on first use, and cached.
    */
   @Override
   public String toString() {
 
-    return new String(m_string);
+    String decoded = m_decoded;
+    if (decoded == null) {
+      decoded = ConversionUtils.decodeString(m_string);
+      m_decoded = decoded;
+    }
+    return decoded;
+  }
+
+  /**
+   * Compares the bytes of two strings, ignoring the case of ASCII letters.
+   * Lingo symbols are compared this way, without decoding them to Java Strings.
+   */
+  boolean equalsIgnoreCase(LString other) {
+    if (other == this) return true;
+    byte[] a = m_string;
+    byte[] b = other.m_string;
+    if (a.length != b.length) return false;
+    // Interned symbols and indexed properties have their hashes cached already
+    if (m_foldedHash != 0 && other.m_foldedHash != 0 && m_foldedHash != other.m_foldedHash) return false;
+    for (int n = 0; n < a.length; n++) {
+      if (a[n] != b[n] && toLowerAscii(a[n]) != toLowerAscii(b[n])) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Hash code consistent with equalsIgnoreCase(LString).
+   */
+  int hashIgnoreCase() {
+    int h = m_foldedHash;
+    if (h == 0) {
+      for (byte b : m_string) {
+        h = 31 * h + toLowerAscii(b);
+      }
+      m_foldedHash = h;
+    }
+    return h;
+  }
+
+  private static int toLowerAscii(byte b) {
+    return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b;
   }
 
   /**
@@ -146,4 +199,24 @@ public class LString extends LValue {
     return new String(m_string, charsetName);
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 6 + m_string.length + (m_string.length % 2);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(getType()); // 2 bytes = Type Identifier
+    buffer.writeInt(m_string.length); // 4 bytes = string length
+    buffer.writeBytes(m_string); // string data
+
+    // Variable byte length sections are padded to even byte boundaries.
+    if ((m_string.length % 2) != 0) buffer.writeByte(0);
+  }
 }
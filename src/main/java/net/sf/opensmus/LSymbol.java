@@ -29,18 +29,31 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Class representing a Lingo compatible Symbol value (LSymbol for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
  */
 public class LSymbol extends LString {
 
+  private static final ConcurrentHashMap<String, LSymbol> SYMBOLS = new ConcurrentHashMap<>();
+
+  private final boolean shared; // Interned by intern(), must never change
+
   /**
    * Constructor. Calls superclass (LString) methods
    */
   public LSymbol(String initString) {
+    this(initString, false);
+  }
+
+  private LSymbol(String initString, boolean interned) {
     super(initString);
     setType(LValue.vt_Symbol);
+    shared = interned;
   }
 
   /**
@@ -49,6 +62,58 @@ public class LSymbol extends LString {
   public LSymbol() {
     super();
     setType(LValue.vt_Symbol);
+    shared = false;
+  }
+
+  /**
+   * Returns the shared LSymbol for a name, creating it on first use.
+   * <BR>Interned symbols are never freed: use this for the fixed names used by the server and scripts,
+   * not for names received from clients.
+   * <BR>Interned symbols can't be decoded into: extractFromBytes(), readFrom() and setType() throw an
+   * UnsupportedOperationException.
+   */
+  public static LSymbol intern(String name) {
+    LSymbol sym = SYMBOLS.get(name);
+    if (sym == null) {
+      sym = SYMBOLS.computeIfAbsent(name, key -> {
+        LSymbol newSym = new LSymbol(key, true);
+        newSym.hashIgnoreCase(); // Precompute the case folded hash
+        return newSym;
+      });
+    }
+    return sym;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int extractFromBytes(byte[] rawBytes, int offset) {
+    checkNotShared();
+    return super.extractFromBytes(rawBytes, offset);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    checkNotShared();
+    super.readFrom(buffer);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void setType(short type) {
+    checkNotShared();
+    super.setType(type);
+  }
+
+  private void checkNotShared() {
+    if (shared)
+      throw new UnsupportedOperationException("LSymbol " + this + " is shared by intern() and can't be changed, use new LSymbol()");
   }
 
   /**
@@ -29,6 +29,10 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
 /**
  * Base class representing a Lingo compatible value (LValue for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
@@ -67,10 +71,10 @@ public class LValue {
    */
   public static LValue getLValue(int initval) {
     try {
-      return new LInteger(initval);
+      return LInteger.valueOf(initval);
     } catch (NullPointerException np) {
       MUSLog.Log("Null exception in Lingo type conversion, returning LVoid.", MUSLog.kDeb);
-      return new LVoid();
+      return LVoid.VOID;
     }
   }
 
@@ -83,7 +87,7 @@ public class LValue {
       return new LString(initval);
     } catch (NullPointerException np) {
       MUSLog.Log("Null exception in Lingo type conversion, returning LVoid.", MUSLog.kDeb);
-      return new LVoid();
+      return LVoid.VOID;
     }
   }
 
@@ -96,7 +100,7 @@ public class LValue {
       return new LFloat(initval);
     } catch (NullPointerException np) {
       MUSLog.Log("Null exception in Lingo type conversion, returning LVoid.", MUSLog.kDeb);
-      return new LVoid();
+      return LVoid.VOID;
     }
   }
 
@@ -109,7 +113,7 @@ public class LValue {
       return new LFloat(initval);
     } catch (NullPointerException np) {
       MUSLog.Log("Null exception in Lingo type conversion, returning LVoid.", MUSLog.kDeb);
-      return new LVoid();
+      return LVoid.VOID;
     }
   }
 
@@ -122,7 +126,7 @@ public class LValue {
       return new LMedia(initval);
     } catch (NullPointerException np) {
       MUSLog.Log("Null exception in Lingo type conversion, returning LVoid.", MUSLog.kDeb);
-      return new LVoid();
+      return LVoid.VOID;
     }
   }
 
@@ -132,35 +136,7 @@ public class LValue {
    */
   public static LValue fromRawBytes(byte[] rawBytes, int offset) {
 
-    short elemType;
-    LValue newVal;
-
-    // First 2 bytes = type identifier
-    elemType = ConversionUtils.byteArrayToShort(rawBytes, offset);
-
-    newVal = switch (elemType) {
-      case LValue.vt_Integer -> new LInteger();
-      case LValue.vt_Symbol -> new LSymbol();
-      case LValue.vt_String -> new LString();
-      case LValue.vt_Picture -> new LPicture();
-      case LValue.vt_Float -> new LFloat();
-      case LValue.vt_List -> new LList();
-      case LValue.vt_Point -> new LPoint();
-      case LValue.vt_Rect -> new LRect();
-      case LValue.vt_PropList -> new LPropList();
-      case LValue.vt_Color -> new LColor();
-      case LValue.vt_Date -> new LDate();
-      case LValue.vt_Media -> new LMedia();
-      case LValue.vt_3dVector -> new L3dVector();
-      case LValue.vt_3dTransform -> new L3dTransform();
-      default -> new LVoid();
-    };
-
-    // Here we could simply store the incoming raw bytes instead of decoding it further...
-    newVal.extractFromBytes(rawBytes, offset + 2);
-
-    return newVal;
-
+    return LValueCodec.decode(rawBytes, offset);
   }
 
   /**
@@ -185,6 +161,27 @@ public class LValue {
     return 0;
   }
 
+  /**
+   * Reads the value, not including the type identifier, from the reader index of a buffer.
+   * <BR>Subclasses that only implement extractFromBytes() are decoded from a copy of the readable bytes.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void readFrom(ByteBuf buffer) {
+    byte[] rawBytes = ByteBufUtil.getBytes(buffer);
+    buffer.skipBytes(extractFromBytes(rawBytes, 0));
+  }
+
+  /**
+   * Implements extractFromBytes() with readFrom(), for subclasses that decode from buffers.
+   * Returns the number of bytes read.
+   */
+  protected final int extractWithReadFrom(byte[] rawBytes, int offset) {
+    ByteBuf buffer = Unpooled.wrappedBuffer(rawBytes);
+    buffer.readerIndex(offset);
+    readFrom(buffer);
+    return buffer.readerIndex() - offset;
+  }
+
   /**
    * Reserved for internal use of OpenSMUS.
    */
@@ -192,6 +189,31 @@ public class LValue {
     return new byte[0];
   }
 
+  /**
+   * Implements getBytes() with writeTo(), encoding straight into an array of the exact size.
+   */
+  protected final byte[] writeToBytes() {
+    ByteBuf buffer = Unpooled.buffer(encodedSize());
+    writeTo(buffer);
+    return buffer.array();
+  }
+
+  /**
+   * Returns the number of bytes this LValue takes up when encoded, including the type identifier.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public int encodedSize() {
+    return getBytes().length;
+  }
+
+  /**
+   * Writes this LValue, including the type identifier, to a buffer.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeBytes(getBytes());
+  }
+
   /**
    * Reserved for internal use of OpenSMUS.
    */
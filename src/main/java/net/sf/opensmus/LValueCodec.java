@@ -0,0 +1,187 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.function.Supplier;
+
+/**
+ * Registry mapping the Lingo type identifiers (LValue.vt_Integer, LValue.vt_List, etc.) used in binary messages
+ * to the LValue classes that decode them.
+ * <BR>All decoding of typed values (message contents, list and property list elements, database values)
+ * goes through this registry, so support for a new type only has to be added here.
+ * Encoding is done by the values themselves, see LValue.writeTo() and LValue.getBytes().
+ */
+public final class LValueCodec {
+
+  private static final int MAX_TYPES = 256;
+
+  // Indexed by type identifier. Replaced as a whole when a type is registered, so it can be read without locking.
+  @SuppressWarnings("unchecked")
+  private static volatile Supplier<? extends LValue>[] s_factories = new Supplier[MAX_TYPES];
+
+  // Limits for one decoded value, including everything nested in it. See setLimits().
+  private static volatile int s_maxDepth = 64;
+  private static volatile int s_maxValues = 65536;
+
+  // Nesting depth and remaining value budget of the value being decoded on each thread
+  private static final ThreadLocal<int[]> DECODE_STATE = ThreadLocal.withInitial(() -> new int[2]);
+
+  static {
+    register(LValue.vt_Void, () -> LVoid.VOID); // Void values have no state to decode
+    register(LValue.vt_Integer, LInteger::new);
+    register(LValue.vt_Symbol, LSymbol::new);
+    register(LValue.vt_String, LString::new);
+    register(LValue.vt_Picture, LPicture::new);
+    register(LValue.vt_Float, LFloat::new);
+    register(LValue.vt_List, LList::new);
+    register(LValue.vt_Point, LPoint::new);
+    register(LValue.vt_Rect, LRect::new);
+    register(LValue.vt_PropList, LPropList::new);
+    register(LValue.vt_Color, LColor::new);
+    register(LValue.vt_Date, LDate::new);
+    register(LValue.vt_Media, LMedia::new);
+    register(LValue.vt_3dVector, L3dVector::new);
+    register(LValue.vt_3dTransform, L3dTransform::new);
+  }
+
+  private LValueCodec() {
+  }
+
+  /**
+   * Registers the class used to decode values of a type. Replaces any class already registered for the type.
+   *
+   * @param type    Type identifier, 0 - 255
+   * @param factory Creates an empty LValue that decodes the type in readFrom()
+   */
+  public static synchronized void register(int type, Supplier<? extends LValue> factory) {
+
+    if (type < 0 || type >= MAX_TYPES)
+      throw new IllegalArgumentException("LValue type out of range: " + type);
+
+    Supplier<? extends LValue>[] factories = s_factories.clone();
+    factories[type] = factory;
+    s_factories = factories;
+  }
+
+  /**
+   * Sets the limits applied when decoding a value: the maximum nesting depth of lists, property lists, points
+   * and rects, and the maximum number of values decoded in total (not counting the packed elements of
+   * integer lists, which take no objects of their own).
+   * Values over the limits fail with an LValueDecodeException, before the rest of their data is decoded.
+   */
+  public static void setLimits(int maxDepth, int maxValues) {
+    s_maxDepth = maxDepth;
+    s_maxValues = maxValues;
+  }
+
+  /**
+   * Returns true if a class is registered for the type.
+   */
+  public static boolean isRegistered(int type) {
+    return type >= 0 && type < MAX_TYPES && s_factories[type] != null;
+  }
+
+  /**
+   * Creates an empty LValue for decoding a value of the given type.
+   * Reserved for internal use of OpenSMUS.
+   *
+   * @throws LValueDecodeException if the type is unknown. The data following it can't be decoded,
+   *                               since its size is unknown too.
+   */
+  public static LValue newValue(int type) {
+
+    Supplier<? extends LValue> factory = (type >= 0 && type < MAX_TYPES) ? s_factories[type] : null;
+    if (factory == null) {
+      MUSLog.Log("Unknown LValue type " + type + " in message content", MUSLog.kMsgErr);
+      throw new LValueDecodeException("Unknown LValue type " + type);
+    }
+
+    return factory.get();
+  }
+
+  /**
+   * Decodes a value, including its type identifier, from raw bytes.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public static LValue decode(byte[] rawBytes, int offset) {
+
+    ByteBuf buffer = Unpooled.wrappedBuffer(rawBytes);
+    buffer.readerIndex(offset);
+    return read(buffer);
+  }
+
+  /**
+   * Reads a value, including its type identifier, from the reader index of a buffer.
+   * Reserved for internal use of OpenSMUS.
+   *
+   * @throws LValueDecodeException if the data is invalid or over the limits set with setLimits()
+   */
+  public static LValue read(ByteBuf buffer) {
+
+    if (buffer.readableBytes() < 2)
+      throw new LValueDecodeException("LValue truncated, " + buffer.readableBytes() + " bytes left");
+
+    int[] state = DECODE_STATE.get();
+    if (state[0] == 0) {
+      state[1] = s_maxValues; // Outermost value, start a new budget
+    } else if (state[0] >= s_maxDepth) {
+      throw new LValueDecodeException("LValue nested deeper than " + s_maxDepth + " levels");
+    }
+    if (--state[1] < 0)
+      throw new LValueDecodeException("LValue contains more than " + s_maxValues + " values");
+
+    state[0]++;
+    try {
+      LValue newVal = newValue(buffer.readShort()); // First 2 bytes = type identifier
+      if (newVal != LVoid.VOID) // Shared, and has no data to decode
+        newVal.readFrom(buffer);
+      return newVal;
+    } catch (IndexOutOfBoundsException e) {
+      throw new LValueDecodeException("LValue truncated: " + e.getMessage());
+    } finally {
+      state[0]--;
+    }
+  }
+
+  /**
+   * Reads the element count of a list, checking that the remaining data can hold that many elements
+   * of at least minElementSize bytes each.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public static int readCount(ByteBuf buffer, int minElementSize) {
+
+    int count = buffer.readInt();
+    if (count < 0 || count > buffer.readableBytes() / minElementSize)
+      throw new LValueDecodeException("Element count " + count + " exceeds the " + buffer.readableBytes() + " bytes left");
+    return count;
+  }
+}
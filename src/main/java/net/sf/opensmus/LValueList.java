@@ -0,0 +1,206 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Unsynchronized storage for the elements of LLists and LPropLists.
+ * <BR>Lists where every element is an integer keep only the encoded values in one int array.
+ * Adding or setting an element of another type converts the list to an array of LValues. Whether a list is
+ * packed is decided when elements are decoded or added, never when they are read.
+ * <BR>Elements of packed integer lists are created when they are read with get(), so reading the same element
+ * twice can return two equal LIntegers rather than the same object. LIntegers have no public state to change.
+ * Elements of any other type are returned as stored, so changes made to an element, such as setting LPoint.m_X,
+ * stay in the list.
+ */
+final class LValueList extends AbstractList<LValue> implements RandomAccess {
+
+  private static final LValue[] NO_VALUES = new LValue[0];
+  private static final int[] NO_INTS = new int[0];
+
+  // True while every element is an LInteger stored in m_ints, false for lists of LValue objects
+  private boolean m_packed;
+
+  private LValue[] m_values = NO_VALUES;
+  private int[] m_ints = NO_INTS;
+  private int m_size;
+
+  @Override
+  public int size() {
+    return m_size;
+  }
+
+  @Override
+  public LValue get(int index) {
+    checkIndex(index, m_size);
+    return m_packed ? LInteger.valueOf(m_ints[index]) : m_values[index];
+  }
+
+  @Override
+  public LValue set(int index, LValue element) {
+    checkIndex(index, m_size);
+    LValue previous = get(index);
+    if (m_packed && !fits(element)) unpack();
+    if (m_packed) {
+      m_ints[index] = element.toInteger();
+    } else {
+      m_values[index] = element;
+    }
+    modCount++;
+    return previous;
+  }
+
+  @Override
+  public void add(int index, LValue element) {
+    checkIndex(index, m_size + 1);
+    if (m_size == 0) {
+      m_packed = fits(element);
+    } else if (m_packed && !fits(element)) {
+      unpack();
+    }
+
+    ensureCapacity(m_size + 1);
+    if (m_packed) {
+      System.arraycopy(m_ints, index, m_ints, index + 1, m_size - index);
+      m_ints[index] = element.toInteger();
+    } else {
+      System.arraycopy(m_values, index, m_values, index + 1, m_size - index);
+      m_values[index] = element;
+    }
+    m_size++;
+    modCount++;
+  }
+
+  @Override
+  public LValue remove(int index) {
+    checkIndex(index, m_size);
+    LValue previous = get(index);
+    if (m_packed) {
+      System.arraycopy(m_ints, index + 1, m_ints, index, m_size - index - 1);
+    } else {
+      System.arraycopy(m_values, index + 1, m_values, index, m_size - index - 1);
+      m_values[m_size - 1] = null;
+    }
+    m_size--;
+    modCount++;
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    m_values = NO_VALUES;
+    m_ints = NO_INTS;
+    m_packed = false;
+    m_size = 0;
+    modCount++;
+  }
+
+  /**
+   * Returns the number of structural changes and replaced elements so far, for detecting changes to the list.
+   */
+  int modCount() {
+    return modCount;
+  }
+
+  /**
+   * Decodes one element, including its type identifier, and adds it to the end of the list.
+   * Integers added to a packed list are copied from the buffer without creating an LValue.
+   */
+  void readElement(ByteBuf buffer) {
+    boolean integer = buffer.getShort(buffer.readerIndex()) == LValue.vt_Integer && buffer.readableBytes() >= 6;
+    if (m_size == 0) m_packed = integer;
+
+    if (m_packed && integer) {
+      ensureCapacity(m_size + 1);
+      buffer.skipBytes(2);
+      m_ints[m_size++] = buffer.readInt();
+      modCount++;
+    } else {
+      add(LValueCodec.read(buffer));
+    }
+  }
+
+  /**
+   * Returns the encoded size of an element, including its type identifier.
+   */
+  int elementSize(int index) {
+    return m_packed ? 6 : m_values[index].encodedSize();
+  }
+
+  /**
+   * Encodes an element, including its type identifier.
+   */
+  void writeElementTo(int index, ByteBuf buffer) {
+    if (m_packed) {
+      buffer.writeShort(LValue.vt_Integer);
+      buffer.writeInt(m_ints[index]);
+    } else {
+      m_values[index].writeTo(buffer);
+    }
+  }
+
+  /**
+   * Reserves room for a number of elements.
+   */
+  void ensureCapacity(int capacity) {
+    if (m_packed) {
+      if (capacity > m_ints.length)
+        m_ints = Arrays.copyOf(m_ints, Math.max(capacity, m_ints.length + (m_ints.length >> 1) + 4));
+    } else if (capacity > m_values.length) {
+      m_values = Arrays.copyOf(m_values, Math.max(capacity, m_values.length + (m_values.length >> 1) + 4));
+    }
+  }
+
+  // Only plain LIntegers are packed, subclasses may carry state of their own
+  private static boolean fits(LValue element) {
+    return element.getClass() == LInteger.class && element.getType() == LValue.vt_Integer;
+  }
+
+  // Converts the packed elements into LValue objects, when an element that doesn't fit is added or set
+  private void unpack() {
+    LValue[] values = new LValue[Math.max(m_size + 4, m_ints.length)];
+    for (int n = 0; n < m_size; n++) {
+      values[n] = LInteger.valueOf(m_ints[n]);
+    }
+    m_values = values;
+    m_ints = NO_INTS;
+    m_packed = false;
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+  }
+}
@@ -29,17 +29,64 @@
 
 package net.sf.opensmus;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Class representing a Lingo compatible Void value (LVoid for short).
  * Lingo is a trademark of Adobe, Inc. All rights reserved.
  */
 public class LVoid extends LValue {
 
+  /**
+   * Shared void value. LVoid has no state, so this instance can be used instead of creating new ones.
+   */
+  public static final LVoid VOID = new LVoid(true);
+
+  private final boolean shared; // VOID, must never change
+
   /**
    * Constructor
    */
   public LVoid() {
+    this(false);
+  }
+
+  private LVoid(boolean isShared) {
     setType(LValue.vt_Void);
+    shared = isShared;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   * Void values have no data. The shared VOID value can't be decoded into and throws an UnsupportedOperationException.
+   */
+  @Override
+  public int extractFromBytes(byte[] rawBytes, int offset) {
+    checkNotShared();
+    return 0;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void readFrom(ByteBuf buffer) {
+    checkNotShared();
+    // No data
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void setType(short type) {
+    checkNotShared();
+    super.setType(type);
+  }
+
+  private void checkNotShared() {
+    if (shared)
+      throw new UnsupportedOperationException("LVoid.VOID is shared and can't be changed, use new LVoid()");
   }
 
   /**
@@ -59,4 +106,19 @@ public class LVoid extends LValue {
     return "void";
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public int encodedSize() {
+    return 2;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  @Override
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeShort(vt_Void);
+  }
 }
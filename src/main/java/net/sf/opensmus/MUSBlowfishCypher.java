@@ -47,6 +47,9 @@
 package net.sf.opensmus;
 
 import io.netty.buffer.ByteBuf;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 public class MUSBlowfishCypher {
   // public final static int MAXKEYLENGTH = 56;
@@ -54,13 +57,8 @@ public class MUSBlowfishCypher {
   final static int PBOX_ENTRIES = 18;
   final static int SBOX_ENTRIES = 256;
 
-  // Static fresh boxes, so we only have them stored and calculated once.
-  // Since everyone is using the same key it's just a waste of time to regenerate them every instantiation.
-  final static int[] PRECALC_PBOX = new int[PBOX_ENTRIES];
-  final static int[] PRECALC_SBOX1 = new int[SBOX_ENTRIES];
-  final static int[] PRECALC_SBOX2 = new int[SBOX_ENTRIES];
-  final static int[] PRECALC_SBOX3 = new int[SBOX_ENTRIES];
-  final static int[] PRECALC_SBOX4 = new int[SBOX_ENTRIES];
+  // Reads and writes 8 keystream bytes at a time, in the same byte order as the blocks
+  final static VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
   final static int[] pbox_init = {
 
           0x243f6a88, 0x85a308d3, 0x13198a2e, 0x03707344, 0xa4093822, 0x299f31d0,
@@ -247,136 +245,134 @@ public class MUSBlowfishCypher {
           0x85cbfe4e, 0x8ae88dd8, 0x7aaaf9b0, 0x4cf9aa7e, 0x1948c25c, 0x02fb8a8c,
           0x01c36ae4, 0xd6ebe1f9, 0x90d4f869, 0xa65cdea0, 0x3f09252d, 0xc208e69f,
           0xb74e6132, 0xce77e25b, 0x578fdfe3, 0x3ac372e6};
-  // The individual instance working boxes
-  final int[] m_pbox = new int[PBOX_ENTRIES];
-  final int[] m_sbox1 = new int[SBOX_ENTRIES];
-  final int[] m_sbox2 = new int[SBOX_ENTRIES];
-  final int[] m_sbox3 = new int[SBOX_ENTRIES];
-  final int[] m_sbox4 = new int[SBOX_ENTRIES];
+
+  // Static key schedule for the global key, so it's only stored and calculated once.
+  // Since everyone is using the same key it's just a waste of time to regenerate it every instantiation.
+  // The IV is reset to 0 before every message, so every message is also XORed with the same keystream
+  // (the IV encrypted over and over). The start of it is precalculated too, up to EncryptionKeystreamSize bytes.
+  // (Declared after the init tables above, since it's built from them.)
+  static volatile MUSBlowfishKey GLOBAL_KEY = new MUSBlowfishKey(new byte[0], 0);
+
+  // The key schedule is shared, each instance only has its own IV
+  final MUSBlowfishKey m_key;
   long m_lCBCIV;
+  int m_keystreamPos = 0; // Position of the next block in the key's keystream, -1 if the IV was set by hand
 
 
-  // Creates a new instance with the pre-calculated boxes
+  // Creates a new instance with the global key
   public MUSBlowfishCypher() {
 
-    reset();
+    m_key = GLOBAL_KEY;
   }
 
 
   // Creates a new instance with a specific key
-  // (Only used to init the first boxes now)
   public MUSBlowfishCypher(byte[] bfkey) {
 
-    int nI;
-
-    // Init the cipher
-    // Step 1: Init P array from pi bytes
-    System.arraycopy(pbox_init, 0, m_pbox, 0, PBOX_ENTRIES);
-
-    // Init S arrays from pi bytes
-    System.arraycopy(sbox_init_1, 0, m_sbox1, 0, SBOX_ENTRIES);
-    System.arraycopy(sbox_init_2, 0, m_sbox2, 0, SBOX_ENTRIES);
-    System.arraycopy(sbox_init_3, 0, m_sbox3, 0, SBOX_ENTRIES);
-    System.arraycopy(sbox_init_4, 0, m_sbox4, 0, SBOX_ENTRIES);
-
-    // Step 2: XOR all parts of P with key data
-    int nLen = bfkey.length;
-    if (nLen == 0) return;
-    int nKeyPos = 0;
-    int nBuild = 0;
-    int nJ;
-
-    for (nI = 0; nI < PBOX_ENTRIES; nI++) {
-      for (nJ = 0; nJ < 4; nJ++) {
-
-        nBuild = (nBuild << 8) | (((int) bfkey[nKeyPos]) & 0x0ff);
-        if (++nKeyPos == nLen) nKeyPos = 0;
-      }
-      m_pbox[nI] ^= nBuild;
-
-    }
-
-    // Steps 3-7: Replace all P, S values with computed values
-    // A 64-bit all-zero block is encrypted with the algorithm as it stands.
-    // The resultant ciphertext replaces P1 and P2.
-    // The ciphertext is then encrypted again with the new subkeys, and P3 and P4 are replaced by the new ciphertext.
-    // This continues, replacing the entire P-array and all the S-box entries.
-    // In all, the Blowfish encryption algorithm will run 521 times to generate all the subkeys - about 4KB of data is processed.
-
-    // The SMUS implementation differs from the standard specs in that it DEcrypts here instead of ENcrypt
-
-    long lZero = 0;
-
-    for (nI = 0; nI < PBOX_ENTRIES; nI += 2) {
-      lZero = decryptBlock(lZero);
-      m_pbox[nI] = (int) (lZero >>> 32);
-      m_pbox[nI + 1] = (int) lZero;
-    }
-    for (nI = 0; nI < SBOX_ENTRIES; nI += 2) {
-      lZero = decryptBlock(lZero);
-      m_sbox1[nI] = (int) (lZero >>> 32);
-      m_sbox1[nI + 1] = (int) lZero;
-    }
-    for (nI = 0; nI < SBOX_ENTRIES; nI += 2) {
-      lZero = decryptBlock(lZero);
-      m_sbox2[nI] = (int) (lZero >>> 32);
-      m_sbox2[nI + 1] = (int) lZero;
-    }
-    for (nI = 0; nI < SBOX_ENTRIES; nI += 2) {
-      lZero = decryptBlock(lZero);
-      m_sbox3[nI] = (int) (lZero >>> 32);
-      m_sbox3[nI + 1] = (int) lZero;
-    }
-    for (nI = 0; nI < SBOX_ENTRIES; nI += 2) {
-      lZero = decryptBlock(lZero);
-      m_sbox4[nI] = (int) (lZero >>> 32);
-      m_sbox4[nI + 1] = (int) lZero;
-    }
-
-    m_lCBCIV = 0;
+    m_key = new MUSBlowfishKey(bfkey, 0);
   }
 
-  // Initialize the fresh boxes with the global key
-  static void initGlobalBoxes(String initKey) {
-
-    // Init a dummy cipher to copy the completed state from
-    MUSBlowfishCypher temp = new MUSBlowfishCypher(initKey.getBytes());
-    // Store the fresh state
-    System.arraycopy(temp.m_pbox, 0, PRECALC_PBOX, 0, PBOX_ENTRIES);
-    System.arraycopy(temp.m_sbox1, 0, PRECALC_SBOX1, 0, SBOX_ENTRIES);
-    System.arraycopy(temp.m_sbox2, 0, PRECALC_SBOX2, 0, SBOX_ENTRIES);
-    System.arraycopy(temp.m_sbox3, 0, PRECALC_SBOX3, 0, SBOX_ENTRIES);
-    System.arraycopy(temp.m_sbox4, 0, PRECALC_SBOX4, 0, SBOX_ENTRIES);
+  // Initialize the key schedule and the keystream of the global key
+  static void initGlobalBoxes(String initKey, int keystreamSize) {
+
+    GLOBAL_KEY = new MUSBlowfishKey(initKey.getBytes(), keystreamSize);
   }
 
   public void setCBCIV(long lNewCBCIV) {
     m_lCBCIV = lNewCBCIV;
+    m_keystreamPos = -1; // No longer at a known position in the keystream
   }
 
   // Restores the cipher to fresh state
+  // (The key schedule is never modified, only the IV has to be reset)
   public void reset() {
 
-    System.arraycopy(PRECALC_PBOX, 0, m_pbox, 0, PBOX_ENTRIES);
-    System.arraycopy(PRECALC_SBOX1, 0, m_sbox1, 0, SBOX_ENTRIES);
-    System.arraycopy(PRECALC_SBOX2, 0, m_sbox2, 0, SBOX_ENTRIES);
-    System.arraycopy(PRECALC_SBOX3, 0, m_sbox3, 0, SBOX_ENTRIES);
-    System.arraycopy(PRECALC_SBOX4, 0, m_sbox4, 0, SBOX_ENTRIES);
     m_lCBCIV = 0;
+    m_keystreamPos = 0;
   }
 
   private long cipherBlockCBC(long lBlock) {
     // This is SMUS specific. Normally in CBC mode each block of plaintext is XORed with the previous ciphertext block (= IV) before being encrypted.
     // But here we sort of reverse it and first encrypt the previous ciphertext block (= IV) and then we xor it with current plaintext block.
-    m_lCBCIV = decryptBlock(m_lCBCIV);
+    m_lCBCIV = m_key.decryptBlock(m_lCBCIV);
+    if (m_keystreamPos >= 0) m_keystreamPos += 8;
     return (lBlock ^ m_lCBCIV);
   }
 
+  // Returns the number of bytes of the keystream that can be used for the next nLen bytes, 0 if it can't be used.
+  private int keystreamAvailable(int nLen) {
+
+    if (m_keystreamPos < 0) return 0;
+    return Math.max(0, Math.min(nLen, m_key.m_keystream.length - m_keystreamPos));
+  }
+
+  // Moves past the blocks used from the keystream. The IV is kept up to date so the block by block
+  // processing can take over where the keystream ends.
+  private void keystreamUsed(int nLen) {
+
+    m_keystreamPos += (nLen + 7) & ~7; // A partial block still uses a whole block
+    m_lCBCIV = (long) LONG_VIEW.get(m_key.m_keystream, m_keystreamPos - 8);
+  }
+
+  // XORs nLen bytes of the buffer starting at index with the keystream, 8 bytes at a time.
+  // Returns the number of bytes processed. Any remaining bytes need to be processed block by block.
+  private int xorKeystream(ByteBuf buffer, int index, int nLen) {
+
+    int n = keystreamAvailable(nLen);
+    if (n == 0) return 0;
+
+    byte[] keystream = m_key.m_keystream;
+    int pos = m_keystreamPos;
+    int i = 0;
+    if (buffer.hasArray()) {
+      byte[] data = buffer.array();
+      int offset = buffer.arrayOffset() + index;
+      for (; i + 8 <= n; i += 8) {
+        LONG_VIEW.set(data, offset + i, (long) LONG_VIEW.get(data, offset + i) ^ (long) LONG_VIEW.get(keystream, pos + i));
+      }
+      for (; i < n; i++) {
+        data[offset + i] ^= keystream[pos + i];
+      }
+    } else {
+      // Direct or composite buffer
+      for (; i + 8 <= n; i += 8) {
+        buffer.setLong(index + i, buffer.getLong(index + i) ^ (long) LONG_VIEW.get(keystream, pos + i));
+      }
+      for (; i < n; i++) {
+        buffer.setByte(index + i, buffer.getByte(index + i) ^ keystream[pos + i]);
+      }
+    }
+
+    keystreamUsed(n);
+    return n;
+  }
+
+  // Same as above for byte arrays
+  private int xorKeystream(byte[] data, int nLen) {
+
+    int n = keystreamAvailable(nLen);
+    if (n == 0) return 0;
+
+    byte[] keystream = m_key.m_keystream;
+    int pos = m_keystreamPos;
+    int i = 0;
+    for (; i + 8 <= n; i += 8) {
+      LONG_VIEW.set(data, i, (long) LONG_VIEW.get(data, i) ^ (long) LONG_VIEW.get(keystream, pos + i));
+    }
+    for (; i < n; i++) {
+      data[i] ^= keystream[pos + i];
+    }
+
+    keystreamUsed(n);
+    return n;
+  }
+
   public void encrypt(byte[] buffer) {
 
     int nLen = buffer.length;
     long lTemp;
 
-    for (int nI = 0; nI < nLen; nI += 8) {
+    for (int nI = xorKeystream(buffer, nLen); nI < nLen; nI += 8) {
       // Encrypt a temporary 64bit block
       lTemp = ConversionUtils.byteArrayToLong(buffer, nI);
       lTemp = cipherBlockCBC(lTemp);
@@ -387,7 +383,11 @@ public class MUSBlowfishCypher {
   // Handles lengths that are not multiples of 8
   public void encrypt(ByteBuf buffer) {
 
+    int done = xorKeystream(buffer, buffer.readerIndex(), buffer.readableBytes());
+    buffer.skipBytes(done);
+
     int nLen = buffer.readableBytes();
+    if (nLen == 0) return;
 
     ByteBuf mirror = buffer.duplicate(); // Create a mirror buffer to be used for putting back the encrypted longs
     mirror.writerIndex(buffer.readerIndex()); // Set the writer index to the start of the buffer
@@ -473,7 +473,7 @@ public class MUSBlowfishCypher {
     int nLen = buffer.length;
     long lTemp;
 
-    for (int nI = 0; nI < nLen; nI += 8) {
+    for (int nI = xorKeystream(buffer, nLen); nI < nLen; nI += 8) {
       // Decrypt a temporary 64bit block
       lTemp = ConversionUtils.byteArrayToLong(buffer, nI);
       lTemp = cipherBlockCBC(lTemp);
@@ -502,6 +502,11 @@ public class MUSBlowfishCypher {
   // Handles lengths that are not multiples of 8
   public void decrypt(ByteBuf buffer, int nLen) {
 
+    int done = xorKeystream(buffer, buffer.readerIndex(), nLen);
+    buffer.skipBytes(done);
+    nLen -= done;
+    if (nLen == 0) return;
+
     // TEMP! Sanity check: First make sure that the remainder is enough
     //   if (buffer.readableBytes() < nLen) {
     //       MUSLog.Log("Decrypt ERROR on start: Not enough bytes in buffer " + buffer.readableBytes() + "/" + nLen, MUSLog.kDeb);
@@ -594,76 +599,10 @@ public class MUSBlowfishCypher {
 
   // Never used
   protected long encryptBlock(long lPlainBlock) {
-    // Split the block
-    int nHi = ConversionUtils.longHi32(lPlainBlock);
-    int nLo = ConversionUtils.longLo32(lPlainBlock);
-
-    int[] sbox1 = m_sbox1;
-    int[] sbox2 = m_sbox2;
-    int[] sbox3 = m_sbox3;
-    int[] sbox4 = m_sbox4;
-
-    int[] pbox = m_pbox;
-
-    nHi ^= pbox[0];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[1];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[2];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[3];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[4];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[5];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[6];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[7];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[8];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[9];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[10];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[11];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[12];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[13];
-    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[14];
-    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[15];
-    nHi ^= ((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff];
-
-    // Swap and finalize
-    int nSwap = nLo;
-    nLo = nHi ^ pbox[16];
-    nHi = nSwap ^ pbox[17];
-
-    // Return the block
-    return ConversionUtils.makeLong(nLo, nHi);
+    return m_key.encryptBlock(lPlainBlock);
   }
 
   protected long decryptBlock(long lCipherBlock) {
-
-    // Split the block
-    int nHi = ConversionUtils.longHi32(lCipherBlock);
-    int nLo = ConversionUtils.longLo32(lCipherBlock);
-
-    nHi ^= m_pbox[17];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[16];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[15];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[14];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[13];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[12];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[11];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[10];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[9];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[8];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[7];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[6];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[5];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[4];
-    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[3];
-    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[2];
-    nHi ^= ((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff];
-
-    // Swap
-    int nSwap = nLo;
-    nLo = nHi ^ m_pbox[1];
-    nHi = nSwap ^ m_pbox[0];
-
-    // Return the block
-    return ConversionUtils.makeLong(nLo, nHi);
+    return m_key.decryptBlock(lCipherBlock);
   }
-
-
 }
@@ -0,0 +1,223 @@
+/*
+  Part of OpenSMUS Source Code.
+  
+  IMPORTANT: Notice that the SMUS protocol (and OpenSMUS) uses a 
+  variation of Blowfish, not compatible with the official Blowfish 
+  specification or existing implementations. The implementation was
+  reverse-engineered by trial and error. The key tables are the same,
+  but the encryption/decryption feedback routines are non-standard. 
+  
+  Note: This class was implemented used a combination of two 
+  reference Blowfish implementations (C++ and Java) in 2001, with the
+  feedback algorithms adjusted to match the non-standard SMUS behavior. 
+  Some of the methods in this file are based on classes 
+  published as part of the initial BlowfishForJava v1.7d (08/10/01) 
+  open source release.
+  Copyright (c) 1997-2001 Markus Hahn <markus_hahn at gmx dot net>
+  At that time, no standard open source license was specified in
+  the Blowfish4Java distribution. Later versions used LGPL or Apache.
+  
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package net.sf.opensmus;
+
+/**
+ * The key schedule (P-array and S-boxes) of the SMUS Blowfish variant, and the start of the keystream it produces.
+ * <BR>Never modified after construction, so a single instance is shared by all the ciphers using the same key.
+ * Each MUSBlowfishCypher only keeps its own IV.
+ * <BR>Reserved for internal use of OpenSMUS.
+ */
+final class MUSBlowfishKey {
+
+  final int[] m_pbox = new int[MUSBlowfishCypher.PBOX_ENTRIES];
+  final int[] m_sbox1 = new int[MUSBlowfishCypher.SBOX_ENTRIES];
+  final int[] m_sbox2 = new int[MUSBlowfishCypher.SBOX_ENTRIES];
+  final int[] m_sbox3 = new int[MUSBlowfishCypher.SBOX_ENTRIES];
+  final int[] m_sbox4 = new int[MUSBlowfishCypher.SBOX_ENTRIES];
+  // Precalculated keystream, see MUSBlowfishCypher
+  final byte[] m_keystream;
+
+  /**
+   * Calculates the key schedule for a key, and the first keystreamSize bytes of its keystream (rounded up to whole blocks).
+   */
+  MUSBlowfishKey(byte[] bfkey, int keystreamSize) {
+
+    setup(bfkey);
+
+    // Store the keystream: the IV (starting at 0) encrypted over and over
+    m_keystream = new byte[(Math.max(0, keystreamSize) + 7) & ~7];
+    long iv = 0;
+    for (int pos = 0; pos < m_keystream.length; pos += 8) {
+      iv = decryptBlock(iv);
+      MUSBlowfishCypher.LONG_VIEW.set(m_keystream, pos, iv);
+    }
+  }
+
+  private void setup(byte[] bfkey) {
+
+    int nI;
+
+    // Init the cipher
+    // Step 1: Init P array from pi bytes
+    System.arraycopy(MUSBlowfishCypher.pbox_init, 0, m_pbox, 0, MUSBlowfishCypher.PBOX_ENTRIES);
+
+    // Init S arrays from pi bytes
+    System.arraycopy(MUSBlowfishCypher.sbox_init_1, 0, m_sbox1, 0, MUSBlowfishCypher.SBOX_ENTRIES);
+    System.arraycopy(MUSBlowfishCypher.sbox_init_2, 0, m_sbox2, 0, MUSBlowfishCypher.SBOX_ENTRIES);
+    System.arraycopy(MUSBlowfishCypher.sbox_init_3, 0, m_sbox3, 0, MUSBlowfishCypher.SBOX_ENTRIES);
+    System.arraycopy(MUSBlowfishCypher.sbox_init_4, 0, m_sbox4, 0, MUSBlowfishCypher.SBOX_ENTRIES);
+
+    // Step 2: XOR all parts of P with key data
+    int nLen = bfkey.length;
+    if (nLen == 0) return;
+    int nKeyPos = 0;
+    int nBuild = 0;
+    int nJ;
+
+    for (nI = 0; nI < MUSBlowfishCypher.PBOX_ENTRIES; nI++) {
+      for (nJ = 0; nJ < 4; nJ++) {
+
+        nBuild = (nBuild << 8) | (((int) bfkey[nKeyPos]) & 0x0ff);
+        if (++nKeyPos == nLen) nKeyPos = 0;
+      }
+      m_pbox[nI] ^= nBuild;
+
+    }
+
+    // Steps 3-7: Replace all P, S values with computed values
+    // A 64-bit all-zero block is encrypted with the algorithm as it stands.
+    // The resultant ciphertext replaces P1 and P2.
+    // The ciphertext is then encrypted again with the new subkeys, and P3 and P4 are replaced by the new ciphertext.
+    // This continues, replacing the entire P-array and all the S-box entries.
+    // In all, the Blowfish encryption algorithm will run 521 times to generate all the subkeys - about 4KB of data is processed.
+
+    // The SMUS implementation differs from the standard specs in that it DEcrypts here instead of ENcrypt
+
+    long lZero = 0;
+
+    for (nI = 0; nI < MUSBlowfishCypher.PBOX_ENTRIES; nI += 2) {
+      lZero = decryptBlock(lZero);
+      m_pbox[nI] = (int) (lZero >>> 32);
+      m_pbox[nI + 1] = (int) lZero;
+    }
+    for (nI = 0; nI < MUSBlowfishCypher.SBOX_ENTRIES; nI += 2) {
+      lZero = decryptBlock(lZero);
+      m_sbox1[nI] = (int) (lZero >>> 32);
+      m_sbox1[nI + 1] = (int) lZero;
+    }
+    for (nI = 0; nI < MUSBlowfishCypher.SBOX_ENTRIES; nI += 2) {
+      lZero = decryptBlock(lZero);
+      m_sbox2[nI] = (int) (lZero >>> 32);
+      m_sbox2[nI + 1] = (int) lZero;
+    }
+    for (nI = 0; nI < MUSBlowfishCypher.SBOX_ENTRIES; nI += 2) {
+      lZero = decryptBlock(lZero);
+      m_sbox3[nI] = (int) (lZero >>> 32);
+      m_sbox3[nI + 1] = (int) lZero;
+    }
+    for (nI = 0; nI < MUSBlowfishCypher.SBOX_ENTRIES; nI += 2) {
+      lZero = decryptBlock(lZero);
+      m_sbox4[nI] = (int) (lZero >>> 32);
+      m_sbox4[nI + 1] = (int) lZero;
+    }
+  }
+
+  // Never used
+  long encryptBlock(long lPlainBlock) {
+    // Split the block
+    int nHi = ConversionUtils.longHi32(lPlainBlock);
+    int nLo = ConversionUtils.longLo32(lPlainBlock);
+
+    int[] sbox1 = m_sbox1;
+    int[] sbox2 = m_sbox2;
+    int[] sbox3 = m_sbox3;
+    int[] sbox4 = m_sbox4;
+
+    int[] pbox = m_pbox;
+
+    nHi ^= pbox[0];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[1];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[2];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[3];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[4];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[5];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[6];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[7];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[8];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[9];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[10];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[11];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[12];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[13];
+    nHi ^= (((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff]) ^ pbox[14];
+    nLo ^= (((sbox1[nHi >>> 24] + sbox2[(nHi >>> 16) & 0x0ff]) ^ sbox3[(nHi >>> 8) & 0x0ff]) + sbox4[nHi & 0x0ff]) ^ pbox[15];
+    nHi ^= ((sbox1[nLo >>> 24] + sbox2[(nLo >>> 16) & 0x0ff]) ^ sbox3[(nLo >>> 8) & 0x0ff]) + sbox4[nLo & 0x0ff];
+
+    // Swap and finalize
+    int nSwap = nLo;
+    nLo = nHi ^ pbox[16];
+    nHi = nSwap ^ pbox[17];
+
+    // Return the block
+    return ConversionUtils.makeLong(nLo, nHi);
+  }
+
+  long decryptBlock(long lCipherBlock) {
+
+    // Split the block
+    int nHi = ConversionUtils.longHi32(lCipherBlock);
+    int nLo = ConversionUtils.longLo32(lCipherBlock);
+
+    nHi ^= m_pbox[17];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[16];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[15];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[14];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[13];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[12];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[11];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[10];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[9];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[8];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[7];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[6];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[5];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[4];
+    nHi ^= (((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff]) ^ m_pbox[3];
+    nLo ^= (((m_sbox1[nHi >>> 24] + m_sbox2[(nHi >>> 16) & 0x0ff]) ^ m_sbox3[(nHi >>> 8) & 0x0ff]) + m_sbox4[nHi & 0x0ff]) ^ m_pbox[2];
+    nHi ^= ((m_sbox1[nLo >>> 24] + m_sbox2[(nLo >>> 16) & 0x0ff]) ^ m_sbox3[(nLo >>> 8) & 0x0ff]) + m_sbox4[nLo & 0x0ff];
+
+    // Swap
+    int nSwap = nLo;
+    nLo = nHi ^ m_pbox[1];
+    nHi = nSwap ^ m_pbox[0];
+
+    // Return the block
+    return ConversionUtils.makeLong(nLo, nHi);
+  }
+
+}
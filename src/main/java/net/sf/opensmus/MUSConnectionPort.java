@@ -32,12 +32,10 @@ package net.sf.opensmus;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -88,6 +86,11 @@ public class MUSConnectionPort {
       boolean tcpdelayflag = (m_server.m_props.getIntProperty("tcpNoDelay") == 1);
       bootstrap.childOption(ChannelOption.TCP_NODELAY, tcpdelayflag);
 
+      // Channels become unwritable above the high watermark, see MUSSlowConsumerPolicy
+      int lowWaterMark = m_server.m_props.getIntProperty("WriteBufferLowWaterMark");
+      int highWaterMark = m_server.m_props.getIntProperty("WriteBufferHighWaterMark");
+      bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(Math.min(lowWaterMark, highWaterMark), highWaterMark));
+
       int lingerTime = m_server.m_props.getIntProperty("soLingerTime");
       if (lingerTime != -1) {
         bootstrap.option(ChannelOption.SO_LINGER, lingerTime);
@@ -98,9 +101,9 @@ public class MUSConnectionPort {
       // bootstrap.setOption("child.reuseAddress", true); // Is this needed?
 
       //Channel sc = bootstrap.bind(new InetSocketAddress(iad, port)); // Start listening to the port and accept connections
-      EventLoopGroup group = new NioEventLoopGroup(); // (1)
-      bootstrap.group(group);
-      bootstrap.channel(NioServerSocketChannel.class);
+      // The event loops are shared by all connection ports and owned by the server
+      bootstrap.group(m_server.m_bossGroup, m_server.m_workerGroup);
+      bootstrap.channel(m_server.m_serverChannelClass);
       Channel sc = bootstrap.bind(new InetSocketAddress(iad, port)).channel(); // Start listening to the port and accept connections
 
       // Add the server socket to the global channel group.
@@ -124,9 +127,7 @@ public class MUSConnectionPort {
 
       // Close all connections and server sockets.
       m_channels.close().awaitUninterruptibly();
-      // Shutdown the selector loop (boss and worker).
-      // Netty 4
-      //factory.releaseExternalResources();
+      // The boss and worker event loops are shared, they are shut down by MUSServer.killServer()
 
       MUSLog.Log("Connection port stopped", MUSLog.kSys);
     } catch (Exception e) {
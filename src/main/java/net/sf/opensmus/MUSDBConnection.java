@@ -197,9 +197,9 @@ public class MUSDBConnection implements ServerUserDatabase {
       atprep.setInt(2, 3); // userlevel
       LInteger currentlevel;
       try {
-        currentlevel = new LInteger(Integer.parseInt(userlevel));
+        currentlevel = LInteger.valueOf(Integer.parseInt(userlevel));
       } catch (NumberFormatException e) {
-        currentlevel = new LInteger(server.m_props.getIntProperty("DefaultUserLevel"));
+        currentlevel = LInteger.valueOf(server.m_props.getIntProperty("DefaultUserLevel"));
       }
       atprep.setBytes(3, currentlevel.getBytes());
       atprep.executeUpdate();
@@ -207,7 +207,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
       atprep.setInt(1, userid);
       atprep.setInt(2, 2); // status
-      LInteger currentstatus = new LInteger(server.m_props.getIntProperty("DefaultUserStatus"));
+      LInteger currentstatus = LInteger.valueOf(server.m_props.getIntProperty("DefaultUserStatus"));
       atprep.setBytes(3, currentstatus.getBytes());
       atprep.executeUpdate();
       atprep.clearParameters();
@@ -736,12 +736,12 @@ public class MUSDBConnection implements ServerUserDatabase {
       result.close();
       stat.close();
 
-      return new LInteger(numofusers);
+      return LInteger.valueOf(numofusers);
 
     } catch (SQLException sqle) {
       MUSLog.Log("SQL exception in srvcmd_getUserCount", MUSLog.kDB);
       MUSLog.Log(sqle, MUSLog.kDB);
-      return new LInteger(0);
+      return LInteger.valueOf(0);
     }
   }
 
@@ -780,12 +780,12 @@ public class MUSDBConnection implements ServerUserDatabase {
       result.close();
       stat.close();
 
-      return new LInteger(numofapps);
+      return LInteger.valueOf(numofapps);
 
     } catch (SQLException sqle) {
       MUSLog.Log("SQL exception in srvcmd_getApplicationCount", MUSLog.kDB);
       MUSLog.Log(sqle, MUSLog.kDB);
-      return new LInteger(0);
+      return LInteger.valueOf(0);
     }
   }
 
@@ -824,12 +824,12 @@ public class MUSDBConnection implements ServerUserDatabase {
       result.close();
       stat.close();
 
-      return new LInteger(numofatts);
+      return LInteger.valueOf(numofatts);
 
     } catch (SQLException sqle) {
       MUSLog.Log("SQL exception in srvcmd_getAttributeCount", MUSLog.kDB);
       MUSLog.Log(sqle, MUSLog.kDB);
-      return new LInteger(0);
+      return LInteger.valueOf(0);
     }
   }
 
@@ -864,8 +864,8 @@ public class MUSDBConnection implements ServerUserDatabase {
 
       while (result.next()) {
         LPropList entry = new LPropList();
-        entry.addElement(new LSymbol("user"), new LString(result.getString(1)));
-        entry.addElement(new LSymbol("expires"), new LString(result.getString(2)));
+        entry.addElement(LSymbol.intern("user"), new LString(result.getString(1)));
+        entry.addElement(LSymbol.intern("expires"), new LString(result.getString(2)));
         blist.addElement(entry);
       }
       result.close();
@@ -1217,7 +1217,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
       if (result.next()) {
         byte[] vl = result.getBytes(1);
-        LInteger lvl = new LInteger(0);
+        LInteger lvl = new LInteger();
         lvl.extractFromBytes(vl, 2); // Extract the value without first two bytes, type info
         result.close();
         stat.close();
@@ -1429,7 +1429,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
       while (result.next()) {
         int appdataid = result.getInt(1);
-        appdataidlist.addElement(new LInteger(appdataid));
+        appdataidlist.addElement(LInteger.valueOf(appdataid));
       }
 
       result.close();
@@ -1486,7 +1486,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             LString thisrestr = new LString();
             thisrestr.extractFromBytes(bytevalue, 2);
             if (thisrestr.toString().equalsIgnoreCase(stringtosearch))
-              resultlist.addElement(new LInteger(thisappid));
+              resultlist.addElement(LInteger.valueOf(thisappid));
           }
         }
         result.close();
@@ -1521,7 +1521,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             LInteger thisresint = new LInteger();
             thisresint.extractFromBytes(bytevalue, 2);
             if (thisresint.toInteger() == lint.toInteger())
-              resultlist.addElement(new LInteger(thisappid));
+              resultlist.addElement(LInteger.valueOf(thisappid));
           }
         }
         result.close();
@@ -1559,7 +1559,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             LInteger thisresint = new LInteger();
             thisresint.extractFromBytes(bytevalue, 2);
             if ((thisresint.toInteger() <= lint2.toInteger()) & (thisresint.toInteger() >= lint.toInteger()))
-              resultlist.addElement(new LInteger(thisappid));
+              resultlist.addElement(LInteger.valueOf(thisappid));
           }
         }
         result.close();
@@ -1619,7 +1619,7 @@ public class MUSDBConnection implements ServerUserDatabase {
     if (msgcont.getType() != LValue.vt_PropList) {
       // Error, we need a proplist
       reply.m_errCode = MUSErrorCode.BadParameter;
-      reply.m_msgContent = new LInteger(0);
+      reply.m_msgContent = LInteger.valueOf(0);
       user.sendMessage(reply);
       return;
     }
@@ -1633,18 +1633,18 @@ public class MUSDBConnection implements ServerUserDatabase {
               LValue arguserid, argpasswd, arguserlevel;
 
               try {
-                arguserid = plist.getElement(new LSymbol("userID"));
-                argpasswd = plist.getElement(new LSymbol("password"));
+                arguserid = plist.getElement(LSymbol.intern("userID"));
+                argpasswd = plist.getElement(LSymbol.intern("password"));
               } catch (PropertyNotFoundException pnf) {
                 // Userid and password are needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
               }
 
               try {
-                arguserlevel = plist.getElement(new LSymbol("userlevel"));
+                arguserlevel = plist.getElement(LSymbol.intern("userlevel"));
               } catch (PropertyNotFoundException pnf) {
                 // Userlevel is optional
-                arguserlevel = new LInteger(mov.properties.getIntProperty("DefaultUserLevel"));
+                arguserlevel = LInteger.valueOf(mov.properties.getIntProperty("DefaultUserLevel"));
               }
 
               // Check types for arguments
@@ -1675,7 +1675,7 @@ public class MUSDBConnection implements ServerUserDatabase {
               boolean usercreated = createUser(arguseridstr.toString(), argpasswdstr.toString(), arguserlevelstr.toString());
 
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("userID"), arguserid);
+              pl.addElement(LSymbol.intern("userID"), arguserid);
               reply.m_msgContent = pl;
 
               if (!usercreated) {
@@ -1685,7 +1685,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             case "deleteuser" -> {
               LValue arguserid;
               try {
-                arguserid = plist.getElement(new LSymbol("userID"));
+                arguserid = plist.getElement(LSymbol.intern("userID"));
               } catch (PropertyNotFoundException pnf) {
                 // Userid is needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1713,7 +1713,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
                 boolean userdeleted = deleteDBUser(userid);
                 LPropList pl = new LPropList();
-                pl.addElement(new LSymbol("userID"), arguseridstr);
+                pl.addElement(LSymbol.intern("userID"), arguseridstr);
                 reply.m_msgContent = pl;
 
                 if (!userdeleted) {
@@ -1725,8 +1725,8 @@ public class MUSDBConnection implements ServerUserDatabase {
               LValue argappid, argdescription;
 
               try {
-                argappid = plist.getElement(new LSymbol("application"));
-                argdescription = plist.getElement(new LSymbol("description"));
+                argappid = plist.getElement(LSymbol.intern("application"));
+                argdescription = plist.getElement(LSymbol.intern("description"));
               } catch (PropertyNotFoundException pnf) {
                 // Application and description are needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1753,7 +1753,7 @@ public class MUSDBConnection implements ServerUserDatabase {
               boolean appcreated = createApplication(argappidstr.toString(), argdescriptionstr.toString());
 
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("application"), argappid);
+              pl.addElement(LSymbol.intern("application"), argappid);
               reply.m_msgContent = pl;
 
               if (!appcreated) {
@@ -1763,7 +1763,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             case "deleteapplication" -> {
               LValue argappid;
               try {
-                argappid = plist.getElement(new LSymbol("application"));
+                argappid = plist.getElement(LSymbol.intern("application"));
               } catch (PropertyNotFoundException pnf) {
                 // Application is needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1789,7 +1789,7 @@ public class MUSDBConnection implements ServerUserDatabase {
                 boolean appdeleted = deleteDBApplication(appid);
 
                 LPropList pl = new LPropList();
-                pl.addElement(new LSymbol("application"), argappidstr);
+                pl.addElement(LSymbol.intern("application"), argappidstr);
                 reply.m_msgContent = pl;
 
                 if (!appdeleted) {
@@ -1801,7 +1801,7 @@ public class MUSDBConnection implements ServerUserDatabase {
               LValue attributes;
 
               try {
-                attributes = plist.getElement(new LSymbol("attribute"));
+                attributes = plist.getElement(LSymbol.intern("attribute"));
               } catch (PropertyNotFoundException pnf) {
                 // Attribute is needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1829,7 +1829,7 @@ public class MUSDBConnection implements ServerUserDatabase {
                 boolean attcreated = declareAttribute(attidsym.toString());
 
                 LPropList pl = new LPropList();
-                pl.addElement(new LSymbol("attribute"), attidsym);
+                pl.addElement(LSymbol.intern("attribute"), attidsym);
                 reply.m_msgContent = pl;
 
                 if (!attcreated) {
@@ -1840,7 +1840,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             case "deleteattribute" -> {
               LValue attributes;
               try {
-                attributes = plist.getElement(new LSymbol("attribute"));
+                attributes = plist.getElement(LSymbol.intern("attribute"));
               } catch (PropertyNotFoundException pnf) {
                 // Application is needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1866,7 +1866,7 @@ public class MUSDBConnection implements ServerUserDatabase {
                 boolean attdeleted = deleteAttribute(attid);
 
                 LPropList pl = new LPropList();
-                pl.addElement(new LSymbol("attribute"), attidsym);
+                pl.addElement(LSymbol.intern("attribute"), attidsym);
                 reply.m_msgContent = pl;
 
                 if (!attdeleted) {
@@ -1878,8 +1878,8 @@ public class MUSDBConnection implements ServerUserDatabase {
               LValue argappid, argattributes;
 
               try {
-                argappid = plist.getElement(new LSymbol("application"));
-                argattributes = plist.getElement(new LSymbol("attribute"));
+                argappid = plist.getElement(LSymbol.intern("application"));
+                argattributes = plist.getElement(LSymbol.intern("attribute"));
               } catch (PropertyNotFoundException pnf) {
                 // Application and description are needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1917,7 +1917,7 @@ public class MUSDBConnection implements ServerUserDatabase {
               int appdatacreated = createApplicationData(appid);
 
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("application"), argappid);
+              pl.addElement(LSymbol.intern("application"), argappid);
               reply.m_msgContent = pl;
 
 
@@ -1939,8 +1939,8 @@ public class MUSDBConnection implements ServerUserDatabase {
             case "ban" -> {
               LValue argentry, argseconds;
               try {
-                argentry = plist.getElement(new LSymbol("user"));
-                argseconds = plist.getElement(new LSymbol("timeToBan"));
+                argentry = plist.getElement(LSymbol.intern("user"));
+                argseconds = plist.getElement(LSymbol.intern("timeToBan"));
               } catch (PropertyNotFoundException pnf) {
                 // Entry and time are needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1958,13 +1958,13 @@ public class MUSDBConnection implements ServerUserDatabase {
               addBannedEntry(argentrystr.toString(), argsecondsint.toInteger());
 
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("user"), argentry);
+              pl.addElement(LSymbol.intern("user"), argentry);
               reply.m_msgContent = pl;
             }
             case "revokeban" -> {
               LValue argentry;
               try {
-                argentry = plist.getElement(new LSymbol("user"));
+                argentry = plist.getElement(LSymbol.intern("user"));
               } catch (PropertyNotFoundException pnf) {
                 // Entry is needed
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -1980,13 +1980,13 @@ public class MUSDBConnection implements ServerUserDatabase {
               removeBannedEntry(argentrystr.toString());
 
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("user"), argentry);
+              pl.addElement(LSymbol.intern("user"), argentry);
               reply.m_msgContent = pl;
             }
           }
         } catch (MUSErrorCode err) {
           reply.m_errCode = err.m_errCode;
-          reply.m_msgContent = new LInteger(0);
+          reply.m_msgContent = LInteger.valueOf(0);
         }
         break; // End DBAdmin commands
       case "dbapplication":
@@ -2013,7 +2013,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
               try {
                 try {
-                  argappid = plist.getElement(new LSymbol("application"));
+                  argappid = plist.getElement(LSymbol.intern("application"));
                 } catch (PropertyNotFoundException pnf) {
                   throw new MUSErrorCode(MUSErrorCode.BadParameter);
                 }
@@ -2040,12 +2040,12 @@ public class MUSDBConnection implements ServerUserDatabase {
                     cl.addElement(new LString(argappidstr.toString()), ret);
                   } catch (MUSErrorCode err) {
                     LPropList tl = new LPropList();
-                    tl.addElement(new LSymbol("errorCode"), new LInteger(err.m_errCode));
+                    tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(err.m_errCode));
                     reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                     cl.addElement(new LString(argappidstr.toString()), tl);
                   } catch (DBException err) {
                     LPropList tl = new LPropList();
-                    tl.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DatabaseError));
+                    tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DatabaseError));
                     reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                     cl.addElement(new LString(argappidstr.toString()), tl);
                   }
@@ -2053,7 +2053,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
               } catch (MUSErrorCode err) {
                 LPropList tl = new LPropList();
-                tl.addElement(new LSymbol("errorCode"), new LInteger(err.m_errCode));
+                tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(err.m_errCode));
                 reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                 cl.addElement(new LString(argappidstr.toString()), tl);
               }
@@ -2081,7 +2081,7 @@ public class MUSDBConnection implements ServerUserDatabase {
             try {
               try {
 
-                arguserid = plist.getElement(new LSymbol("userID"));
+                arguserid = plist.getElement(LSymbol.intern("userID"));
               } catch (PropertyNotFoundException pnf) {
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
               }
@@ -2108,19 +2108,19 @@ public class MUSDBConnection implements ServerUserDatabase {
                   cl.addElement(new LString(arguseridstr.toString()), ret);
                 } catch (MUSErrorCode err) {
                   LPropList tl = new LPropList();
-                  tl.addElement(new LSymbol("errorCode"), new LInteger(err.m_errCode));
+                  tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(err.m_errCode));
                   reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                   cl.addElement(new LString(arguseridstr.toString()), tl);
                 } catch (DBException err) {
                   LPropList tl = new LPropList();
-                  tl.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DatabaseError));
+                  tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DatabaseError));
                   reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                   cl.addElement(new LString(arguseridstr.toString()), tl);
                 }
               }
             } catch (MUSErrorCode err) {
               LPropList tl = new LPropList();
-              tl.addElement(new LSymbol("errorCode"), new LInteger(err.m_errCode));
+              tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(err.m_errCode));
               reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
               cl.addElement(new LString(arguseridstr.toString()), tl);
             }
@@ -2143,8 +2143,8 @@ public class MUSDBConnection implements ServerUserDatabase {
 
 
               try {
-                arguserid = plist.getElement(new LSymbol("userID"));
-                argappid = plist.getElement(new LSymbol("application"));
+                arguserid = plist.getElement(LSymbol.intern("userID"));
+                argappid = plist.getElement(LSymbol.intern("application"));
               } catch (PropertyNotFoundException pnf) {
                 throw new MUSErrorCode(MUSErrorCode.BadParameter);
               }
@@ -2200,12 +2200,12 @@ public class MUSDBConnection implements ServerUserDatabase {
                 cl.addElement(new LString(arguseridstr.toString()), ret);
               } catch (MUSErrorCode err) {
                 LPropList tl = new LPropList();
-                tl.addElement(new LSymbol("errorCode"), new LInteger(err.m_errCode));
+                tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(err.m_errCode));
                 reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                 cl.addElement(new LString(arguseridstr.toString()), tl);
               } catch (DBException err) {
                 LPropList tl = new LPropList();
-                tl.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DatabaseError));
+                tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DatabaseError));
                 reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
                 cl.addElement(new LString(arguseridstr.toString()), tl);
               }
@@ -2232,7 +2232,7 @@ public class MUSDBConnection implements ServerUserDatabase {
     LValue attributes;
     // Other commands require a valid #attribute field, SMUS reacts creating one
     try {
-      attributes = msgattributes.getElement(new LSymbol("attribute"));
+      attributes = msgattributes.getElement(LSymbol.intern("attribute"));
     } catch (PropertyNotFoundException pnf) {
       attributes = new LList();
     }
@@ -2254,7 +2254,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
       // Validate optional lastUpdateTime property
       LValue msgupdatetime;
-      LSymbol lutsym = new LSymbol("lastUpdateTime");
+      LSymbol lutsym = LSymbol.intern("lastUpdateTime");
       LValue tval = new LValue();
       try {
         msgupdatetime = msgattributes.getElement(lutsym);
@@ -2271,14 +2271,14 @@ public class MUSDBConnection implements ServerUserDatabase {
           if (!msgtime.toString().equals(curtime.toString())) {
             // Not OK, return error and indicate this in the reply
             reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
-            al.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DataConcurrencyError));
+            al.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DataConcurrencyError));
             al.addElement(lutsym, tval);
             return al;
           }
         } else {
           // Not a valid time string specified, return error and indicate this in the reply
           reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
-          al.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DataConcurrencyError));
+          al.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DataConcurrencyError));
           al.addElement(lutsym, tval);
           return al;
         }
@@ -2330,7 +2330,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
     if (attrcommand.equalsIgnoreCase("getAttribute")) {
       // Add lastUpdateTime anyway
-      attrlist.addElement(new LSymbol("lastUpdateTime"));
+      attrlist.addElement(LSymbol.intern("lastUpdateTime"));
 
       for (int e = 0; e < attrlist.count(); e++) {
         try {
@@ -2374,8 +2374,8 @@ public class MUSDBConnection implements ServerUserDatabase {
     LValue argsearch2 = new LValue();
 
     try {
-      argapplication = plist.getElement(new LSymbol("application"));
-      argattribute = plist.getElement(new LSymbol("attribute"));
+      argapplication = plist.getElement(LSymbol.intern("application"));
+      argattribute = plist.getElement(LSymbol.intern("attribute"));
     } catch (PropertyNotFoundException pnf) {
       // Application and attribute are needed
       throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -2392,7 +2392,7 @@ public class MUSDBConnection implements ServerUserDatabase {
     // Now try to get #text or #number
 
     try {
-      argsearch1 = plist.getElement(new LSymbol("text"));
+      argsearch1 = plist.getElement(LSymbol.intern("text"));
       if (argsearch1.getType() != LValue.vt_String) {
         throw new MUSErrorCode(MUSErrorCode.BadParameter);
       }
@@ -2404,7 +2404,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
     if (!hasValidSearchArg) {
       try {
-        argsearch1 = plist.getElement(new LSymbol("number"));
+        argsearch1 = plist.getElement(LSymbol.intern("number"));
         if (argsearch1.getType() != LValue.vt_Integer) {
           throw new MUSErrorCode(MUSErrorCode.BadParameter);
         }
@@ -2417,11 +2417,11 @@ public class MUSDBConnection implements ServerUserDatabase {
 
     if (!hasValidSearchArg) {
       try {
-        argsearch1 = plist.getElement(new LSymbol("lowNum"));
+        argsearch1 = plist.getElement(LSymbol.intern("lowNum"));
         if (argsearch1.getType() != LValue.vt_Integer) {
           throw new MUSErrorCode(MUSErrorCode.BadParameter);
         }
-        argsearch2 = plist.getElement(new LSymbol("highNum"));
+        argsearch2 = plist.getElement(LSymbol.intern("highNum"));
         if (argsearch2.getType() != LValue.vt_Integer) {
           throw new MUSErrorCode(MUSErrorCode.BadParameter);
         }
@@ -2434,7 +2434,7 @@ public class MUSDBConnection implements ServerUserDatabase {
 
     if (!hasValidSearchArg) {
       try {
-        argsearch1 = plist.getElement(new LSymbol("all"));
+        argsearch1 = plist.getElement(LSymbol.intern("all"));
         hasValidSearchArg = true;
         searchtype = "All";
       } catch (PropertyNotFoundException pnf) {
@@ -2507,7 +2507,7 @@ public class MUSDBConnection implements ServerUserDatabase {
               throw new MUSErrorCode(MUSErrorCode.NotPermittedWithUserLevel);
           }
         }
-        intattrlist.addElement(new LInteger(attid));
+        intattrlist.addElement(LInteger.valueOf(attid));
       } catch (DBException dbe) {
         MUSLog.Log("Invalid DB Command: could not get attribute " + attname, MUSLog.kDB);
         throw new MUSErrorCode(MUSErrorCode.DatabaseRecordNotExists);
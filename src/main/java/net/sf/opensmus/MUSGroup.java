@@ -29,29 +29,32 @@
 
 package net.sf.opensmus;
 
-import java.util.Enumeration;
+import io.netty.buffer.ByteBuf;
+import java.util.Arrays;
 import java.util.Vector;
-import java.util.concurrent.ConcurrentHashMap;
+import net.sf.opensmus.io.EncryptedBuffer;
 
 /////////////////////////////////////////////////////////////
 public class MUSGroup implements ServerGroup {
 
   public final String m_name;
+  final MUSMsgHeaderString m_nameHeader; // Recipient of the messages forwarded to this group
   public final Vector<MUSAttribute> m_attributelist = new Vector<>();
   public boolean m_enabled = true;
   public boolean m_persists = false;
   public int m_userlimit = -1;
   private final MUSMovie m_movie;
-  private final ConcurrentHashMap<String, ServerUser> m_userlist = new ConcurrentHashMap<>();
+  private final MUSGroupMembers m_userlist = new MUSGroupMembers();
 
   /////////////////////////////////////////////////////////////
   public MUSGroup(MUSMovie initmovie, String initname) {
 
     m_movie = initmovie;
     m_name = initname;
+    m_nameHeader = new MUSMsgHeaderString(initname);
 
     // Add the lastupdateTime attribute
-    LSymbol attname = new LSymbol("lastUpdateTime");
+    LSymbol attname = LSymbol.intern("lastUpdateTime");
     LValue attvalue = MUSAttribute.getTime();
     addAttribute(new MUSAttribute(attname, attvalue));
 
@@ -70,8 +73,7 @@ public class MUSGroup implements ServerGroup {
     if ((m_userlist.size() >= m_userlimit) && (m_userlimit != -1))
       throw new MUSErrorCode(MUSErrorCode.ErrorJoiningGroup);
 
-    String ukey = oneuser.name().toUpperCase();
-    if (m_userlist.putIfAbsent(ukey, oneuser) == null) {
+    if (m_userlist.add(oneuser)) {
 
       // Add the user to the group before we notify the scripts
       MUSLog.Log(oneuser.name() + " joined group " + name(), MUSLog.kUsr);
@@ -88,11 +90,9 @@ public class MUSGroup implements ServerGroup {
 
   public void removeUser(ServerUser oneuser) {
 
-    String ukey = oneuser.name().toUpperCase();
-    if (m_userlist.containsKey(ukey)) {
+    // Remove the user from the group before we notify the scripts
+    if (m_userlist.remove(oneuser) != null) {
 
-      // Remove the user from the group before we notify the scripts
-      m_userlist.remove(ukey);
       MUSLog.Log(oneuser.name() + " left group " + name(), MUSLog.kUsr);
       oneuser.groupLeft(this);
 
@@ -106,9 +106,21 @@ public class MUSGroup implements ServerGroup {
     }
   }
 
+  /**
+   * Removes all users from the group without notifying the scripts, updating the group list of every user.
+   * Reserved for internal use of OpenSMUS.
+   */
+  void removeMembers() {
+
+    // Each member is removed once, either here or by a concurrent removeUser() that already told it
+    for (ServerUser member : m_userlist.clear()) {
+      member.groupLeft(this);
+    }
+  }
+
   public void checkStructure() {
 
-    for (ServerUser user : m_userlist.values()) {
+    for (ServerUser user : m_userlist.snapshot()) {
       String ukey = user.name().toUpperCase();
       if (!m_movie.userThreadAlive(ukey)) {
         MUSLog.Log("Found dead user at group:" + m_name + ", user:" + user.name(), MUSLog.kDeb);
@@ -147,7 +159,7 @@ public class MUSGroup implements ServerGroup {
     LValue attributes;
     // Other commands require a valid #attribute field, SMUS reacts creating one
     try {
-      attributes = msgattributes.getElement(new LSymbol("attribute"));
+      attributes = msgattributes.getElement(LSymbol.intern("attribute"));
     } catch (PropertyNotFoundException pnf) {
       attributes = new LList();
     }
@@ -162,7 +174,7 @@ public class MUSGroup implements ServerGroup {
 
       // Validate optional lastUpdateTime property
       LValue msgupdatetime;
-      LSymbol lutsym = new LSymbol("lastUpdateTime");
+      LSymbol lutsym = LSymbol.intern("lastUpdateTime");
       LValue tval = new LValue();
       try {
         msgupdatetime = msgattributes.getElement(lutsym);
@@ -180,14 +192,14 @@ public class MUSGroup implements ServerGroup {
           if (!msgtime.toString().equals(curtime.toString())) {
             // Not OK, return error and indicate this in the reply
             reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
-            al.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DataConcurrencyError));
+            al.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DataConcurrencyError));
             al.addElement(lutsym, tval);
             return al;
           }
         } else {
           // Not a valid time string specified, return error and indicate this in the reply
           reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
-          al.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.DataConcurrencyError));
+          al.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.DataConcurrencyError));
           al.addElement(lutsym, tval);
           return al;
         }
@@ -229,7 +241,7 @@ public class MUSGroup implements ServerGroup {
 
     if (attrcommand.equalsIgnoreCase("getAttribute")) {
       // Add lastUpdateTime anyway
-      attrlist.addElement(new LSymbol("lastUpdateTime"));
+      attrlist.addElement(LSymbol.intern("lastUpdateTime"));
 
       for (int e = 0; e < attrlist.count(); e++) {
         try {
@@ -265,19 +277,19 @@ public class MUSGroup implements ServerGroup {
   }
 
   public LValue srvcmd_getAllUsersCount() {
-    return new LInteger(m_userlist.size());
+    return LInteger.valueOf(m_userlist.size());
   }
 
   public LValue srvcmd_getUsers() {
     LPropList pl = new LPropList();
-    pl.addElement(new LSymbol("groupName"), new LString(m_name));
+    pl.addElement(LSymbol.intern("groupName"), new LString(m_name));
     LList ml = new LList();
 
-    for (ServerUser mv : m_userlist.values()) {
+    for (ServerUser mv : m_userlist.snapshot()) {
       ml.addElement(new LString(mv.name()));
     }
 
-    pl.addElement(new LSymbol("groupMembers"), ml);
+    pl.addElement(LSymbol.intern("groupMembers"), ml);
     return pl;
   }
 
@@ -294,15 +306,14 @@ public class MUSGroup implements ServerGroup {
   public LValue srvcmd_getUserCount() {
 
     LPropList pl = new LPropList();
-    pl.addElement(new LSymbol("groupName"), new LString(m_name));
-    pl.addElement(new LSymbol("numberMembers"), new LInteger(m_userlist.size()));
+    pl.addElement(LSymbol.intern("groupName"), new LString(m_name));
+    pl.addElement(LSymbol.intern("numberMembers"), LInteger.valueOf(m_userlist.size()));
     return pl;
   }
 
   public ServerUser getUser(String uname) throws UserNotFoundException {
 
-    String ukey = uname.toUpperCase();
-    ServerUser user = m_userlist.get(ukey);
+    ServerUser user = m_userlist.get(uname);
     if (user == null) {
       throw new UserNotFoundException("User not found");
     } else {
@@ -312,11 +323,7 @@ public class MUSGroup implements ServerGroup {
 
   public void removeAllUsers() {
 
-    for (ServerUser mu : m_userlist.values()) {
-      mu.groupLeft(this);
-    }
-
-    m_userlist.clear();
+    removeMembers();
 
     // This will kill the group
     if (m_userlist.isEmpty()) {
@@ -332,29 +339,27 @@ public class MUSGroup implements ServerGroup {
 
   public ServerUser getServerUser(int useridx) throws UserNotFoundException {
 
-    try {
-      Enumeration<ServerUser> enume = m_userlist.elements();
-      int enumidx = 1;
-      while (enume.hasMoreElements()) {
-        ServerUser gn = enume.nextElement();
-        if (useridx == enumidx)
-          return gn;
-
-        enumidx++;
-      }
-      // Throw user not found otherwise
-      throw new UserNotFoundException("User not found");
-    } catch (Exception e) {
+    // Indexes start at 1, members are in join order
+    ServerUser[] members = m_userlist.snapshot();
+    if (useridx < 1 || useridx > members.length)
       throw new UserNotFoundException("User not found");
-    }
+
+    return members[useridx - 1];
   }
 
   public Vector<String> getUserNames() {
-    return new Vector<>(m_userlist.keySet());
+
+    // Upper case, as the names were returned when they were the keys of the member map
+    ServerUser[] members = m_userlist.snapshot();
+    Vector<String> names = new Vector<>(members.length);
+    for (ServerUser member : members) {
+      names.addElement(member.name().toUpperCase());
+    }
+    return names;
   }
 
   public Vector<ServerUser> getServerUsers() {
-    return new Vector<>(m_userlist.values());
+    return new Vector<>(Arrays.asList(m_userlist.snapshot()));
   }
 
   public int serverUserCount() {
@@ -362,8 +367,35 @@ public class MUSGroup implements ServerGroup {
   }
 
   public void sendMessage(MUSMessage msg) {
-    for (ServerUser oneClient : m_userlist.values()) {
-      oneClient.sendMessage(msg);
+
+    MUSServer server = m_movie.getServer();
+
+    // Encode the message only once and write a duplicate of the same buffer to every member.
+    // With #All encryption the buffer is also encrypted only once: every message is encrypted
+    // from the start of the global key stream, so all members would get the same ciphertext anyway.
+    ByteBuf encoded = null;
+    try {
+      for (ServerUser oneClient : m_userlist.snapshot()) {
+        if (oneClient instanceof MUSUser mu && mu.acceptsSharedEncoding(msg)) {
+          if (encoded == null) {
+            encoded = msg.encode(mu.channel.alloc(), server.m_directBuffers);
+            if (server.m_allEncrypted) {
+              int start = encoded.readerIndex();
+              new MUSBlowfish().encode(encoded);
+              encoded.readerIndex(start);
+            }
+          }
+
+          ByteBuf dup = encoded.retainedDuplicate();
+          mu.sendEncoded(msg, server.m_allEncrypted ? new EncryptedBuffer(dup) : dup);
+        } else {
+          // UDP delivery and server side scripts get the message itself
+          oneClient.sendMessage(msg);
+        }
+      }
+    } finally {
+      if (encoded != null)
+        encoded.release();
     }
   }
 
@@ -0,0 +1,203 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+
+package net.sf.opensmus;
+
+import java.util.Arrays;
+
+/**
+ * The members of a group, optimised for broadcasting.
+ * <BR>Members are kept in join order in an array that is replaced, never changed, when a user joins or leaves,
+ * so sending a message to the group iterates a plain array without locking or allocating.
+ * A hash table on the member names, ignoring case, is replaced with it and serves lookups by name.
+ * Joins and leaves copy both arrays, which is cheap next to the broadcasts of a busy group.
+ * Emptying the group with clear() replaces them once for all the members.
+ */
+final class MUSGroupMembers {
+
+  private static final ServerUser[] NO_USERS = new ServerUser[0];
+
+  // Members and hash table, always replaced together
+  private static final class State {
+
+    final ServerUser[] m_members;
+    final ServerUser[] m_table; // Open addressing with linear probing, at most half full
+
+    State(ServerUser[] members, ServerUser[] table) {
+      m_members = members;
+      m_table = table;
+    }
+  }
+
+  private volatile State m_state = new State(NO_USERS, new ServerUser[2]);
+
+  /**
+   * Returns the current members. The array is shared and must not be changed.
+   */
+  ServerUser[] snapshot() {
+    return m_state.m_members;
+  }
+
+  int size() {
+    return m_state.m_members.length;
+  }
+
+  boolean isEmpty() {
+    return m_state.m_members.length == 0;
+  }
+
+  /**
+   * Returns the member with this name, ignoring case, or null if there is none.
+   */
+  ServerUser get(String name) {
+
+    ServerUser[] table = m_state.m_table;
+    int mask = table.length - 1;
+    for (int slot = hash(name) & mask; ; slot = (slot + 1) & mask) {
+      ServerUser member = table[slot];
+      if (member == null || member.name().equalsIgnoreCase(name))
+        return member;
+    }
+  }
+
+  /**
+   * Adds a user. Returns false if a member with the same name is already in the group.
+   */
+  synchronized boolean add(ServerUser user) {
+
+    if (get(user.name()) != null)
+      return false;
+
+    State state = m_state;
+    ServerUser[] members = Arrays.copyOf(state.m_members, state.m_members.length + 1);
+    members[members.length - 1] = user;
+
+    ServerUser[] table;
+    if (members.length * 2 > state.m_table.length) {
+      table = buildTable(members);
+    } else {
+      table = state.m_table.clone();
+      insert(table, user);
+    }
+    m_state = new State(members, table);
+    return true;
+  }
+
+  /**
+   * Removes the member with the same name as a user. Returns the member removed, or null if there was none.
+   */
+  synchronized ServerUser remove(ServerUser user) {
+
+    ServerUser member = get(user.name());
+    if (member == null)
+      return null;
+
+    State state = m_state;
+    ServerUser[] current = state.m_members;
+    ServerUser[] members = NO_USERS;
+    if (current.length > 1) {
+      members = new ServerUser[current.length - 1];
+      int n = 0;
+      for (ServerUser other : current) {
+        if (other != member) members[n++] = other;
+      }
+    }
+
+    ServerUser[] table;
+    if (members.length * 8 < state.m_table.length) {
+      table = buildTable(members); // Shrink tables left mostly empty by users leaving
+    } else {
+      table = state.m_table.clone();
+      delete(table, member);
+    }
+    m_state = new State(members, table);
+    return member;
+  }
+
+  /**
+   * Removes all the members at once. Returns the members removed.
+   */
+  synchronized ServerUser[] clear() {
+
+    ServerUser[] members = m_state.m_members;
+    m_state = new State(NO_USERS, new ServerUser[2]);
+    return members;
+  }
+
+  private static ServerUser[] buildTable(ServerUser[] members) {
+
+    ServerUser[] table = new ServerUser[Math.max(2, Integer.highestOneBit(Math.max(1, members.length) * 2) * 2)];
+    for (ServerUser member : members) {
+      insert(table, member);
+    }
+    return table;
+  }
+
+  private static void insert(ServerUser[] table, ServerUser user) {
+
+    int mask = table.length - 1;
+    int slot = hash(user.name()) & mask;
+    while (table[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = user;
+  }
+
+  // Deletes a member, shifting back the entries of its probe sequence that follow so lookups still find them
+  private static void delete(ServerUser[] table, ServerUser member) {
+
+    int mask = table.length - 1;
+    int slot = hash(member.name()) & mask;
+    while (table[slot] != member) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = null;
+
+    for (int next = (slot + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+      int home = hash(table[next].name()) & mask;
+      // Move the entry into the hole unless its home slot lies after the hole
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        table[slot] = table[next];
+        table[next] = null;
+        slot = next;
+      }
+    }
+  }
+
+  // Hash consistent with equalsIgnoreCase(), which compares the characters folded to upper and then lower case
+  private static int hash(String name) {
+
+    int h = 0;
+    for (int n = 0; n < name.length(); n++) {
+      h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(n)));
+    }
+    return h ^ (h >>> 16);
+  }
+}
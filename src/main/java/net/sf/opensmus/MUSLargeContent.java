@@ -0,0 +1,78 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package net.sf.opensmus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * The undecoded content of a large message received from a user, kept as a slice of the buffer it was
+ * received in instead of being copied into a byte array. See LargeContentThreshold in the server configuration.
+ * <BR>The content is shared by the received message and the copies forwarded to its recipients. The buffer
+ * is released, and its size taken off the limits of the sender, when the last of them has been handled or written.
+ */
+final class MUSLargeContent extends AbstractReferenceCounted {
+
+  private final ByteBuf m_buffer;
+  private final MUSUser m_sender;
+  private final int m_size;
+
+  MUSLargeContent(ByteBuf buffer, MUSUser sender) {
+    m_buffer = buffer;
+    m_sender = sender;
+    m_size = buffer.readableBytes();
+  }
+
+  int size() {
+    return m_size;
+  }
+
+  // The indexes of the buffer are never changed, so copies can be written from several IO threads at once
+  void writeTo(ByteBuf out) {
+    out.writeBytes(m_buffer, m_buffer.readerIndex(), m_size);
+  }
+
+  LValue decode() {
+    return LValueCodec.read(m_buffer.duplicate());
+  }
+
+  @Override
+  protected void deallocate() {
+    m_buffer.release();
+    m_sender.releaseLargeContent(m_size);
+  }
+
+  @Override
+  public ReferenceCounted touch(Object hint) {
+    m_buffer.touch(hint);
+    return this;
+  }
+}
@@ -33,21 +33,21 @@ import io.netty.buffer.ByteBuf;
 
 public class MUSLogonMessage extends MUSMessage {
 
-  private static final LSymbol MOVIEID = new LSymbol("!movieID");
-  private static final LSymbol USERID = new LSymbol("!userID");
-  private static final LSymbol PASSWORD = new LSymbol("!password");
-  private static final LSymbol PATHNAME = new LSymbol("!pathname");
-  private static final LSymbol LOGON = new LSymbol("!Logon");
-  private static final LSymbol UDPPORT = new LSymbol("!udpport");
-  private static final LSymbol LOCALADDRESS = new LSymbol("!localaddress");
+  private static final LSymbol MOVIEID = LSymbol.intern("!movieID");
+  private static final LSymbol USERID = LSymbol.intern("!userID");
+  private static final LSymbol PASSWORD = LSymbol.intern("!password");
+  private static final LSymbol PATHNAME = LSymbol.intern("!pathname");
+  private static final LSymbol LOGON = LSymbol.intern("!Logon");
+  private static final LSymbol UDPPORT = LSymbol.intern("!udpport");
+  private static final LSymbol LOCALADDRESS = LSymbol.intern("!localaddress");
   private final MUSBlowfish m_cipher; // Only used to decrypt the logon contents
   public String m_moviename;
   public String m_userID;
   public String m_password;
   public String m_pathname = "default";
-  public LValue m_logon = new LVoid();
-  public LValue m_localUDPPortInfo = new LVoid();
-  public LValue m_localAddressInfo = new LVoid();
+  public LValue m_logon = LVoid.VOID;
+  public LValue m_localUDPPortInfo = LVoid.VOID;
+  public LValue m_localAddressInfo = LVoid.VOID;
   String m_localUDPAddress;
   int m_localUDPPort;
   int m_logonPacketFormat = 0; // 0 = old style (list with 3 items), 1 = SMUS 3 style (property list)
@@ -30,10 +30,15 @@
 package net.sf.opensmus;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCounted;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Class representing a message formatted according to the Shockwave MultiUserServer specs.
@@ -41,13 +46,29 @@ import java.net.InetAddress;
  * for more information about the internal structure of a Shockwave binary message.
  * Shockwave is a trademark of Macromedia, Inc. All rights reserved.
  */
-public class MUSMessage {
+public class MUSMessage implements ReferenceCounted {
 
   /**
    * Default MUS message header, included automatically with each message.
    */
   public final static byte[] m_header = {0x72, 0x00};
 
+  // Pooled messages per thread. With the caps below a full pool keeps at most about 8 KB per message.
+  private static final int MAX_POOLED_PER_THREAD = 512;
+
+  private static final Recycler<MUSMessage> RECYCLER = new Recycler<MUSMessage>(MAX_POOLED_PER_THREAD) {
+    @Override
+    protected MUSMessage newObject(Handle<MUSMessage> handle) {
+      return new MUSMessage(handle);
+    }
+  };
+
+  private static final AtomicIntegerFieldUpdater<MUSMessage> REFCNT_UPDATER =
+          AtomicIntegerFieldUpdater.newUpdater(MUSMessage.class, "m_refCnt");
+
+  // Content arrays above this size are not kept by recycled messages
+  private static final int MAX_KEPT_RAW_CONTENT = 4096;
+
   /**
    * Message error code, represented as a MUSErrorCode type (for example MUSErrorCode.NoError)
    */
@@ -79,12 +100,39 @@ public class MUSMessage {
    */
   public LValue m_msgContent;
 
+  /**
+   * Raw content bytes of a received message whose content has not been decoded yet.
+   * Only used while m_msgContent is null.
+   */
+  private byte[] m_rawContent;
+  private int m_rawLength; // Recycled messages may have a longer m_rawContent array than the content
+
+  /**
+   * Large undecoded content of a received message, kept in the receive buffer instead of m_rawContent.
+   * Only used while m_msgContent is null, and only valid while the message has not been released.
+   */
+  private MUSLargeContent m_largeContent;
+
+  /**
+   * Encoded subject, sender and content, shared between a message and the copies made with forward().
+   */
+  private SharedBody m_body;
+
   /**
    * UDP flag for this message. When set to TRUE the dispatcher will attempt to deliver the message
    * using the UDP connection channel.
    */
   public boolean m_udp = false;
 
+  // Only used by messages taken from the pool of recycled messages, see newReceived() and forward()
+  private Recycler.Handle<MUSMessage> m_handle;
+  private volatile int m_refCnt;
+  private MUSMessage m_source; // Message a forwarded copy shares its body with, retained until the copy is released
+  private MUSMsgHeaderStringList m_ownRecipients;
+  private byte[] m_ownRawContent;
+  private MUSMsgHeaderString m_lastSubject;
+  private SharedBody m_ownBody;
+
 
   /**
    * Default Constructor
@@ -92,6 +140,11 @@ public class MUSMessage {
   public MUSMessage() {
   }
 
+  private MUSMessage(Recycler.Handle<MUSMessage> handle) {
+    m_handle = handle;
+    m_ownRecipients = new MUSMsgHeaderStringList();
+  }
+
   /**
    * Constructor. Created a message from raw bytes.
    */
@@ -99,6 +152,19 @@ public class MUSMessage {
     this.extractMUSMessage(buf);
   }
 
+  /**
+   * Constructor. Created a message from raw bytes.
+   * When lazyContent is true the content is only decoded when first needed, see getContent().
+   */
+  public MUSMessage(ByteBuf buf, boolean lazyContent) {
+    if (lazyContent) {
+      m_rawContent = readRawBytes(buf);
+      m_rawLength = m_rawContent.length;
+    } else {
+      this.extractMUSMessage(buf);
+    }
+  }
+
   /**
    * Constructor. Clones another message.
    */
@@ -106,10 +172,160 @@ public class MUSMessage {
     // byte[] raw = msg.getBytes().toByteBuffer().array();
     ByteBuf raw = msg.getBytes();
     raw.readerIndex(6); // Forward past the header bytes
-    extractMUSMessage(raw);
+    if (msg.m_msgContent == null) {
+      m_rawContent = readRawBytes(raw); // Keep the content undecoded, like the original (in a copy of its own)
+      m_rawLength = m_rawContent.length;
+    } else {
+      extractMUSMessage(raw);
+    }
     // TODO: Replace the m_senderID here if we want to skip reading the bytes
   }
 
+  /**
+   * Returns a message received from a user, taken from a pool of recycled messages.
+   * <BR>The sender is always the name of the user, the sender in the buffer is skipped to prevent spoofed messages.
+   * With lazy content decoding the content is only decoded when first needed, and content above the
+   * LargeContentThreshold stays in the receive buffer until the message is released.
+   * <BR>The message has a reference count of 1 and goes back to the pool when it is released, after which
+   * it must not be used anymore. Code that keeps a received message should keep detach() instead.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public static MUSMessage newReceived(ByteBuf buf, MUSUser sender) {
+    MUSMessage msg = obtain();
+    try {
+      msg.readReceived(buf, sender.nameHeader(), sender.lazyContentDecoding(), sender);
+    } catch (RuntimeException e) {
+      msg.release();
+      throw e;
+    }
+    return msg;
+  }
+
+  /**
+   * Same as above for a sender that is not a connected user. The content is never kept in the receive buffer.
+   */
+  static MUSMessage newReceived(ByteBuf buf, MUSMsgHeaderString sender, boolean lazyContent) {
+    MUSMessage msg = obtain();
+    try {
+      msg.readReceived(buf, sender, lazyContent, null);
+    } catch (RuntimeException e) {
+      msg.release();
+      throw e;
+    }
+    return msg;
+  }
+
+  private static MUSMessage obtain() {
+    MUSMessage msg = RECYCLER.get();
+    REFCNT_UPDATER.set(msg, 1);
+    return msg;
+  }
+
+  // Reads a received message into a recycled one, reusing its recipient list, content array
+  // and the header strings that are the same as in the last message it held
+  private void readReceived(ByteBuf buf, MUSMsgHeaderString sender, boolean lazyContent, MUSUser user) {
+
+    m_errCode = buf.readInt();
+    m_timeStamp = buf.readInt();
+
+    m_subject = m_lastSubject = MUSMsgHeaderString.read(buf, m_lastSubject);
+    MUSMsgHeaderString.skip(buf);
+    m_senderID = sender;
+    m_recptID = m_ownRecipients;
+    m_recptID.readReplacing(buf);
+
+    if (!lazyContent) {
+      m_msgContent = LValueCodec.read(buf);
+      buf.skipBytes(buf.readableBytes());
+      return;
+    }
+
+    int size = buf.readableBytes();
+    if (user != null && user.reserveLargeContent(size)) {
+      m_largeContent = new MUSLargeContent(buf.readRetainedSlice(size), user);
+    } else {
+      byte[] raw = m_ownRawContent;
+      if (raw == null || raw.length < size) m_ownRawContent = raw = new byte[size];
+      buf.readBytes(raw, 0, size);
+      m_rawContent = raw;
+      m_rawLength = size;
+    }
+  }
+
+
+  /**
+   * Returns a copy of this message addressed to a single recipient, with a new timestamp.
+   * <BR>Unlike the clone constructor the copy is not serialized and parsed again: it shares the subject,
+   * sender and content objects with this message, and their encoded bytes are produced only once for
+   * all the copies. Only the timestamp and recipient are written per copy.
+   * <BR>The copy is taken from the pool of recycled messages and retains this message until it is released.
+   * The caller must release it once it has been sent.
+   * <BR>Reserved for internal use of OpenSMUS.
+   */
+  public MUSMessage forward(MUSMsgHeaderString recpt, int timeStamp) {
+
+    if (m_body == null || !m_body.matches(this))
+      m_body = newBody();
+
+    MUSMessage fwd = obtain();
+    fwd.m_source = retain();
+    fwd.m_errCode = m_errCode;
+    fwd.m_timeStamp = timeStamp;
+    fwd.m_subject = m_subject;
+    fwd.m_senderID = m_senderID;
+    fwd.m_recptID = fwd.m_ownRecipients;
+    fwd.m_recptID.clear();
+    fwd.m_recptID.addElement(recpt);
+    fwd.m_msgContent = m_msgContent;
+    fwd.m_rawContent = m_rawContent;
+    fwd.m_rawLength = m_rawLength;
+    fwd.m_largeContent = m_largeContent;
+    fwd.m_udp = m_udp;
+    fwd.m_body = m_body;
+    return fwd;
+  }
+
+  /**
+   * Same as above for a recipient name. The caller must release the copy once it has been sent.
+   * <BR>Reserved for internal use of OpenSMUS.
+   */
+  public MUSMessage forward(String recpt, int timeStamp) {
+    return forward(new MUSMsgHeaderString(recpt), timeStamp);
+  }
+
+  // A recycled message encodes the body for its first copies into the same buffer every time
+  private SharedBody newBody() {
+    if (m_handle == null || m_body != null)
+      return new SharedBody().set(this);
+
+    if (m_ownBody == null)
+      m_ownBody = new SharedBody();
+    return m_ownBody.set(this);
+  }
+
+  /**
+   * Returns a message with the same fields that stays valid after this message has been released:
+   * this message itself, or a copy of it if it was taken from the pool of recycled messages.
+   * The content is decoded first. Used for messages handed to server side scripts, which may keep them.
+   * <BR>Reserved for internal use of OpenSMUS.
+   */
+  public MUSMessage detach() {
+
+    decodeContent();
+    if (m_handle == null)
+      return this;
+
+    MUSMessage msg = new MUSMessage();
+    msg.m_errCode = m_errCode;
+    msg.m_timeStamp = m_timeStamp;
+    msg.m_subject = m_subject;
+    msg.m_senderID = m_senderID;
+    msg.m_recptID = new MUSMsgHeaderStringList();
+    msg.m_recptID.m_stringlist.addAll(m_recptID.m_stringlist);
+    msg.m_msgContent = m_msgContent;
+    msg.m_udp = m_udp;
+    return msg;
+  }
 
   /**
    * Reserved for internal use of OpenSMUS.
@@ -118,25 +334,31 @@ public class MUSMessage {
   // Other usages use the constructor instead.
   public void extractMUSMessage(ByteBuf buf) {
 
-    byte[] m_rawContents = readRawBytes(buf);
+    readHeader(buf);
 
-    // Debug helpers
-    // System.out.println("Encrypted: " + m_encrypted);
-    // System.out.println("Length: " + m_rawContents.length);
-    // System.out.println("String format: " + new String(m_rawContents));
-    // System.out.println("Decoded >" + ConversionUtils.bytesToBinHex(m_rawContents));
-
-    //m_msgContent = new MUSMsgContent();
-    //m_msgContent = new LValue();
-    //m_msgContent.extractFromBytes(m_rawContents);
-    m_msgContent = LValue.fromRawBytes(m_rawContents, 0);
+    // The content is decoded straight from the buffer, the rest of the data is the contents
+    m_msgContent = LValueCodec.read(buf);
+    buf.skipBytes(buf.readableBytes());
   }
 
   /**
+   * Reads the header fields and returns a copy of the undecoded content bytes.
    * Reserved for internal use of OpenSMUS.
    */
   byte[] readRawBytes(ByteBuf msg) {
 
+    readHeader(msg);
+
+    byte[] rawContents = new byte[msg.readableBytes()]; // The rest of the data is the contents
+    msg.readBytes(rawContents);
+    return rawContents;
+  }
+
+  /**
+   * Reads the header fields, leaving the reader index at the start of the content.
+   */
+  private void readHeader(ByteBuf msg) {
+
     m_errCode = msg.readInt();
     m_timeStamp = msg.readInt();
 
@@ -157,14 +379,123 @@ public class MUSMessage {
 
     m_recptID = new MUSMsgHeaderStringList();
     m_recptID.extractMUSMsgHeaderStringList(msg);
+  }
 
-    int contentSize = msg.readableBytes(); // The rest of the data is the contents
 
-    byte[] rawContents = new byte[contentSize];
-    msg.readBytes(rawContents, 0, contentSize);
-    return rawContents;
+  /**
+   * Returns the content of this message, decoding it first if it was received with lazy content decoding.
+   * <BR>Code reading m_msgContent directly on a received message should call this method (or decodeContent()) first.
+   */
+  public LValue getContent() {
+    decodeContent();
+    return m_msgContent;
+  }
+
+  /**
+   * Decodes the raw content bytes of a message received with lazy content decoding into m_msgContent.
+   * Does nothing if the content has already been decoded or set.
+   */
+  public void decodeContent() {
+    if (m_msgContent == null && m_rawContent != null) {
+      m_msgContent = LValueCodec.read(Unpooled.wrappedBuffer(m_rawContent, 0, m_rawLength));
+      m_rawContent = null;
+    } else if (m_msgContent == null && m_largeContent != null) {
+      m_msgContent = m_largeContent.decode();
+    }
+  }
+
+  /**
+   * Messages taken from the pool of recycled messages (received messages and forwarded copies) are reference counted,
+   * and go back to the pool when released. Other messages are only reference counted while they hold large received
+   * content, see LargeContentThreshold, otherwise their reference count is always 1 and retain() and release() do nothing.
+   * Each message written to a channel is retained for the encoder, which releases it once encoded, and the
+   * dispatcher releases received messages once they have been handled.
+   */
+  @Override
+  public int refCnt() {
+    if (m_handle != null) return m_refCnt;
+    return m_largeContent == null ? 1 : m_largeContent.refCnt();
+  }
+
+  @Override
+  public MUSMessage retain() {
+    return retain(1);
+  }
+
+  @Override
+  public MUSMessage retain(int increment) {
+    if (m_handle != null) {
+      for (;;) {
+        int count = m_refCnt;
+        if (count <= 0 || count + increment < count)
+          throw new IllegalReferenceCountException(count, increment);
+        if (REFCNT_UPDATER.compareAndSet(this, count, count + increment))
+          return this;
+      }
+    }
+    if (m_largeContent != null) m_largeContent.retain(increment);
+    return this;
+  }
+
+  @Override
+  public MUSMessage touch() {
+    if (m_handle == null && m_largeContent != null) m_largeContent.touch();
+    return this;
+  }
+
+  @Override
+  public MUSMessage touch(Object hint) {
+    if (m_handle == null && m_largeContent != null) m_largeContent.touch(hint);
+    return this;
   }
 
+  @Override
+  public boolean release() {
+    return release(1);
+  }
+
+  @Override
+  public boolean release(int decrement) {
+    if (m_handle != null) {
+      for (;;) {
+        int count = m_refCnt;
+        if (count < decrement || decrement <= 0)
+          throw new IllegalReferenceCountException(count, -decrement);
+        if (REFCNT_UPDATER.compareAndSet(this, count, count - decrement)) {
+          if (count != decrement) return false;
+          recycle();
+          return true;
+        }
+      }
+    }
+    return m_largeContent != null && m_largeContent.release(decrement);
+  }
+
+  private void recycle() {
+
+    if (m_source != null)
+      m_source.release(); // A copy only refers to the content of its source
+    else if (m_largeContent != null)
+      m_largeContent.release();
+    if (m_ownBody != null)
+      m_ownBody.clear();
+    if (m_ownRawContent != null && m_ownRawContent.length > MAX_KEPT_RAW_CONTENT)
+      m_ownRawContent = null;
+
+    m_errCode = 0;
+    m_timeStamp = 0;
+    m_subject = null;
+    m_senderID = null;
+    m_recptID = null;
+    m_msgContent = null;
+    m_rawContent = null;
+    m_rawLength = 0;
+    m_largeContent = null;
+    m_body = null;
+    m_source = null;
+    m_udp = false;
+    m_handle.recycle(this);
+  }
 
   protected int extractInt(byte[] rawmsg, int offset) {
     return ConversionUtils.byteArrayToInt(rawmsg, offset);
@@ -182,7 +513,7 @@ public class MUSMessage {
     MUSLog.Log("m_receiptID: ", MUSLog.kDeb);
     m_recptID.dump();
     MUSLog.Log("m_content: ", MUSLog.kDeb);
-    m_msgContent.dump();
+    getContent().dump();
     MUSLog.Log("MUSMessage end >>>>>>>>>>>>>>>>>>>>", MUSLog.kDeb);
   }
 
@@ -194,7 +525,7 @@ public class MUSMessage {
             ", m_subject=" + m_subject.toString() +
             ", m_senderID=" + m_senderID.toString() +
             ", m_recptID=" + m_recptID +
-            ", m_msgContent=" + m_msgContent +
+            ", m_msgContent=" + getContent() +
             ", m_udp=" + m_udp +
             '}';
   }
@@ -204,25 +535,78 @@ public class MUSMessage {
    */
   public ByteBuf getBytes() {
 
-    byte[] subjectBytes = m_subject.getBytes();
-    byte[] senderBytes = m_senderID.getBytes();
-    byte[] recptBytes = m_recptID.getBytes();
-    byte[] contentBytes = m_msgContent.getBytes();
+    ByteBuf buffer = Unpooled.buffer(encodedSize());
+    writeTo(buffer);
+    return buffer;
+  }
+
+  /**
+   * Returns the number of bytes this message takes up when encoded, including the 6 header bytes.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public int encodedSize() {
 
-    int contentSize = 8 + subjectBytes.length + senderBytes.length + recptBytes.length + contentBytes.length; // +8 = errorCode & timeStamp
-    ByteBuf buffer = Unpooled.buffer(6 + contentSize);
+    if (m_body != null && m_body.matches(this))
+      return 6 + 8 + m_body.headSize() + m_recptID.encodedSize() + m_body.contentSize();
+
+    return 6 + 8 + m_subject.encodedSize() + m_senderID.encodedSize() + m_recptID.encodedSize() + contentSize(); // +8 = errorCode & timeStamp
+  }
+
+  private int contentSize() {
+    // Undecoded content is written back as it was received
+    if (m_msgContent == null && m_rawContent != null) return m_rawLength;
+    if (m_msgContent == null && m_largeContent != null) return m_largeContent.size();
+    return m_msgContent.encodedSize();
+  }
+
+  /**
+   * Encodes this message into a new buffer of the exact size, allocated from the given allocator.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public ByteBuf encode(ByteBufAllocator alloc, boolean direct) {
+
+    int size = encodedSize();
+    ByteBuf buffer = direct ? alloc.ioBuffer(size) : alloc.heapBuffer(size);
+    writeTo(buffer);
+    return buffer;
+  }
+
+  /**
+   * Writes this message, including the 6 header bytes, to a buffer.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void writeTo(ByteBuf buffer) {
+
+    int start = buffer.writerIndex();
 
     buffer.writeBytes(MUSMessage.m_header);
-    buffer.writeInt(contentSize);
+    buffer.writeInt(0); // Content size, filled in below
     buffer.writeInt(m_errCode);
     buffer.writeInt(m_timeStamp);
 
-    buffer.writeBytes(subjectBytes);
-    buffer.writeBytes(senderBytes);
-    buffer.writeBytes(recptBytes);
-    buffer.writeBytes(contentBytes);
+    if (m_body != null && m_body.matches(this)) {
+      // Forwarded message, copy the body parts that were encoded once for all copies
+      m_body.writeHeadTo(buffer);
+      m_recptID.writeTo(buffer);
+      m_body.writeContentTo(buffer);
+    } else {
+      writeFieldsTo(buffer);
+    }
 
-    return buffer;
+    buffer.setInt(start + 2, buffer.writerIndex() - start - 6);
+  }
+
+  private void writeFieldsTo(ByteBuf buffer) {
+
+    m_subject.writeTo(buffer);
+    m_senderID.writeTo(buffer);
+    m_recptID.writeTo(buffer);
+    if (m_msgContent == null && m_rawContent != null)
+      buffer.writeBytes(m_rawContent, 0, m_rawLength);
+    else if (m_msgContent == null && m_largeContent != null)
+      m_largeContent.writeTo(buffer);
+    else
+      m_msgContent.writeTo(buffer);
   }
 
   /**
@@ -249,4 +633,85 @@ public class MUSMessage {
     return new DatagramPacket(pbuffer, pbuffer.length, addr, port);
   }
 
+  /**
+   * The parts of a message that stay the same when it is forwarded to several recipients.
+   * The encoded bytes are only valid as long as a message still refers to the same objects,
+   * so a copy that gets a new subject, sender or content is written field by field again.
+   */
+  private static final class SharedBody {
+
+    // Encoded bodies kept by recycled messages are shrunk back when they grew above this size
+    private static final int MAX_KEPT_CAPACITY = 4096;
+
+    private MUSMsgHeaderString m_subject;
+    private MUSMsgHeaderString m_senderID;
+    private LValue m_msgContent;
+    private byte[] m_rawContent;
+    private int m_rawLength;
+    private MUSLargeContent m_largeContent;
+
+    // The encoded subject and sender, followed by the encoded content unless it is received content that is
+    // written back as it was received. Encoded before the first copy is made and only read with absolute
+    // indexes afterwards, so copies can be written from several IO threads at once.
+    private final ByteBuf m_encoded = Unpooled.buffer(256);
+    private int m_headSize;
+
+    SharedBody set(MUSMessage msg) {
+      m_subject = msg.m_subject;
+      m_senderID = msg.m_senderID;
+      m_msgContent = msg.m_msgContent;
+      m_rawContent = msg.m_rawContent;
+      m_rawLength = msg.m_rawLength;
+      m_largeContent = msg.m_largeContent;
+
+      m_encoded.clear();
+      m_subject.writeTo(m_encoded);
+      m_senderID.writeTo(m_encoded);
+      m_headSize = m_encoded.writerIndex();
+      if (m_msgContent != null)
+        m_msgContent.writeTo(m_encoded);
+      return this;
+    }
+
+    void clear() {
+      m_subject = null;
+      m_senderID = null;
+      m_msgContent = null;
+      m_rawContent = null;
+      m_largeContent = null;
+      m_encoded.clear();
+      if (m_encoded.capacity() > MAX_KEPT_CAPACITY)
+        m_encoded.capacity(256);
+    }
+
+    boolean matches(MUSMessage msg) {
+      return msg.m_subject == m_subject && msg.m_senderID == m_senderID
+              && msg.m_msgContent == m_msgContent && msg.m_rawContent == m_rawContent
+              && msg.m_largeContent == m_largeContent;
+    }
+
+    int headSize() {
+      return m_headSize;
+    }
+
+    void writeHeadTo(ByteBuf buffer) {
+      buffer.writeBytes(m_encoded, 0, m_headSize);
+    }
+
+    int contentSize() {
+      if (m_msgContent != null) return m_encoded.writerIndex() - m_headSize;
+      // Undecoded content is written back as it was received, large content straight from the receive buffer
+      return m_rawContent != null ? m_rawLength : m_largeContent.size();
+    }
+
+    void writeContentTo(ByteBuf buffer) {
+      if (m_msgContent != null)
+        buffer.writeBytes(m_encoded, m_headSize, m_encoded.writerIndex() - m_headSize);
+      else if (m_rawContent != null)
+        buffer.writeBytes(m_rawContent, 0, m_rawLength);
+      else
+        m_largeContent.writeTo(buffer);
+    }
+  }
+
 }
@@ -0,0 +1,176 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package net.sf.opensmus;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the handling of incoming messages (dispatching, system commands, server side scripts and database access)
+ * off the network threads, so slow business logic doesn't stall every other connection sharing an event loop.
+ * <p>
+ * The pool has ThreadPoolSize single threaded executors. All messages from the same user, or to the same movie
+ * when ThreadPoolOrdering is "Movie", are handled by the same executor and so in the order they arrived.
+ * When ThreadPoolVirtualThreads is 1 the executors run on virtual threads.
+ * <p>
+ * Reading from a user's connection is suspended while more than MaxUserMemorySize bytes of its messages are queued,
+ * or while more than MaxTotalMemorySize bytes are queued in total. A user is resumed when one of its own messages
+ * is handled and both limits are met again. Users suspended only by the total are resumed together once the total
+ * falls under three quarters of MaxTotalMemorySize.
+ */
+public class MUSMessageExecutor {
+
+  private final EventExecutorGroup m_group;
+  private final EventExecutor[] m_executors;
+  private final boolean m_perMovie;
+  private final long m_maxUserMemory; // bytes, 0 = no limit
+  private final long m_maxTotalMemory; // bytes, 0 = no limit
+  private final long m_resumeTotalMemory; // bytes, suspended users are resumed when the total falls under this
+  private final AtomicLong m_totalQueued = new AtomicLong();
+  private final Set<MUSUser> m_suspended = ConcurrentHashMap.newKeySet();
+
+  public MUSMessageExecutor(MUSServerProperties props) {
+
+    int threads = props.getIntProperty("ThreadPoolSize");
+
+    ThreadFactory factory;
+    if (props.getIntProperty("ThreadPoolVirtualThreads") == 1)
+      factory = Thread.ofVirtual().name("OpenSMUS-msg-", 1).factory();
+    else
+      factory = Thread.ofPlatform().name("OpenSMUS-msg-", 1).daemon(true).factory();
+
+    m_group = new DefaultEventExecutorGroup(threads, factory);
+    m_executors = new EventExecutor[threads];
+    int e = 0;
+    for (EventExecutor executor : m_group) {
+      m_executors[e++] = executor;
+    }
+
+    m_perMovie = props.getProperty("ThreadPoolOrdering").equalsIgnoreCase("Movie");
+    m_maxUserMemory = Math.max(0, props.getIntProperty("MaxUserMemorySize"));
+    m_maxTotalMemory = Math.max(0, props.getIntProperty("MaxTotalMemorySize"));
+    m_resumeTotalMemory = m_maxTotalMemory - m_maxTotalMemory / 4;
+
+    MUSLog.Log("Message thread pool: " + threads + " threads, ordered per " + (m_perMovie ? "movie" : "user"), MUSLog.kSys);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   * Queues a message posted by a user. size is the number of bytes the message took up on the wire.
+   */
+  public void execute(MUSUser user, MUSMessage msg, int size) {
+
+    MUSMovie movie = user.m_movie;
+    Object key = (m_perMovie && movie != null) ? movie : user;
+    EventExecutor executor = m_executors[Math.floorMod(System.identityHashCode(key), m_executors.length)];
+
+    long userQueued = user.m_queuedBytes.addAndGet(size);
+    long totalQueued = m_totalQueued.addAndGet(size);
+    if (overLimit(userQueued, totalQueued))
+      suspend(user);
+
+    try {
+      executor.execute(() -> {
+        try {
+          user.dispatchMessage(msg);
+        } catch (LValueDecodeException e) {
+          // Content decoded on demand failed, close the connection like IOHandler does for content decoded on read
+          MUSLog.Log("Invalid message content from " + user + ": " + e.getMessage(), MUSLog.kMsgErr);
+          Channel channel = user.channel;
+          if (channel != null)
+            channel.close().addListener(MUSUser.REPORT_CLOSE);
+        } catch (Exception e) {
+          MUSLog.Log("Exception handling message from " + user + ": " + e, MUSLog.kSys);
+        } finally {
+          dequeued(user, size);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      msg.release();
+      dequeued(user, size);
+    }
+  }
+
+  private boolean overLimit(long userQueued, long totalQueued) {
+    return (m_maxUserMemory > 0 && userQueued > m_maxUserMemory) || (m_maxTotalMemory > 0 && totalQueued > m_maxTotalMemory);
+  }
+
+  private void suspend(MUSUser user) {
+
+    Channel channel = user.channel;
+    if (channel == null)
+      return;
+
+    // Stop reading before joining the set, so a resume that finds the user in the set always comes after it
+    channel.config().setAutoRead(false);
+    if (m_suspended.add(user))
+      tryResume(user); // The queue may have drained while suspending
+  }
+
+  private void dequeued(MUSUser user, int size) {
+
+    user.m_queuedBytes.addAndGet(-size);
+    long totalQueued = m_totalQueued.addAndGet(-size);
+    if (m_suspended.isEmpty())
+      return;
+
+    if (totalQueued < m_resumeTotalMemory && totalQueued + size >= m_resumeTotalMemory) {
+      // Only the message that takes the total under the mark walks the set
+      for (MUSUser suspended : m_suspended) {
+        tryResume(suspended);
+      }
+    } else if (m_suspended.contains(user)) {
+      tryResume(user);
+    }
+  }
+
+  private void tryResume(MUSUser user) {
+
+    if (!overLimit(user.m_queuedBytes.get(), m_totalQueued.get()) && m_suspended.remove(user))
+      user.channel.config().setAutoRead(true);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   * Stops the executors, giving queued messages up to gracePeriod seconds to be handled.
+   */
+  public void shutdown(int gracePeriod) {
+    m_group.shutdownGracefully().awaitUninterruptibly(gracePeriod, TimeUnit.SECONDS);
+  }
+}
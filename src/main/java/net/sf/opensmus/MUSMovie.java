@@ -34,11 +34,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
-import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -56,6 +56,7 @@ public class MUSMovie implements ServerMovie {
   private final MUSServer server;
   private final int messagingLevel;
   private final Hashtable<String, Integer> userLevelCache = new Hashtable<>();
+  private final MUSSystemCommands systemCommands = new MUSSystemCommands();
   public final String name;
   public final MUSMovieProperties properties;
   public boolean enabled = true;
@@ -94,6 +95,7 @@ public class MUSMovie implements ServerMovie {
     messagingLevel = properties.getIntProperty("MessagingUserLevel");
 
     buildUserlevelCache();
+    registerSystemCommands();
 
     // When a movie is created add it to the server list of movies
     server.addMovie(this);
@@ -180,6 +182,8 @@ public class MUSMovie implements ServerMovie {
     }
 
     groups.remove(gkey);
+    oneGroup.removeMembers(); // Groups deleted while not empty must not stay in the group lists of their members
+    server.invalidateRoutes();
 
     MUSLog.Log("Group removed:" + oneGroup.m_name, MUSLog.kGrp);
   }
@@ -188,8 +192,8 @@ public class MUSMovie implements ServerMovie {
 
     LPropList pl = new LPropList();
     // MUSGroup gr = getGroup("@AllUsers");
-    pl.addElement(new LSymbol("movieID"), new LString(name));
-    pl.addElement(new LSymbol("numberMembers"), allUsers.srvcmd_getAllUsersCount());
+    pl.addElement(LSymbol.intern("movieID"), new LString(name));
+    pl.addElement(LSymbol.intern("numberMembers"), allUsers.srvcmd_getAllUsersCount());
 
     return pl;
   }
@@ -264,13 +268,14 @@ public class MUSMovie implements ServerMovie {
 
     String ukey = oneuser.name().toUpperCase();
     if (users.remove(ukey) != null) {
+      server.invalidateRoutes();
 
       for (ServerSideScript script : scripts) {
         script.userLogOff(oneuser);
       }
 
-      // Remove the user from all groups   TODO: Do we really need to loop through ALL groups? Why not just the user's groups?
-      for (MUSGroup group : groups.values()) {
+      // Remove the user from all groups. Groups and users list each other, so only the user's groups are visited.
+      for (ServerGroup group : oneuser.getGroups()) {
         group.removeUser(oneuser);
       }
 
@@ -321,22 +326,22 @@ public class MUSMovie implements ServerMovie {
   public LValue srvcmd_getGroups() {
 
     LPropList pl = new LPropList();
-    pl.addElement(new LSymbol("movieID"), new LString(name));
+    pl.addElement(LSymbol.intern("movieID"), new LString(name));
     LList cl = new LList();
 
     for (MUSGroup group : groups.values()) {
       cl.addElement(new LString(group.m_name));
     }
 
-    pl.addElement(new LSymbol("groups"), cl);
+    pl.addElement(LSymbol.intern("groups"), cl);
     return pl;
   }
 
   public LValue srvcmd_getGroupCount() {
 
     LPropList pl = new LPropList();
-    pl.addElement(new LSymbol("movieID"), new LString(name));
-    pl.addElement(new LSymbol("numberGroups"), new LInteger(groups.size()));
+    pl.addElement(LSymbol.intern("movieID"), new LString(name));
+    pl.addElement(LSymbol.intern("numberGroups"), LInteger.valueOf(groups.size()));
     return pl;
 
   }
@@ -583,6 +588,7 @@ public class MUSMovie implements ServerMovie {
     if (scripts.size() >= scriptNum && scriptNum >= 0) {
       ServerSideScript script = scripts.remove(scriptNum);
       script.scriptDelete();
+      unregisterCommands(script);
       // Add a default script if necessary
       if (scripts.isEmpty()) scripts.add(new ServerSideScript());
       return true;
@@ -602,6 +608,7 @@ public class MUSMovie implements ServerMovie {
       if (n.equalsIgnoreCase(scriptName)) {
         script.scriptDelete();
         it.remove();
+        unregisterCommands(script);
         // Add a default script if necessary
         if (scripts.isEmpty()) scripts.add(new ServerSideScript());
         return true;
@@ -629,6 +636,86 @@ public class MUSMovie implements ServerMovie {
         userLevelCache.put(ckey, ulevel);
       }
     }
+    systemCommands.updateLevels(this::configuredUserLevel);
+    registerConfiguredCommands();
+  }
+
+  // Userlevel property of a command, -1 if there is none
+  private int configuredUserLevel(String command) {
+    Integer level = userLevelCache.get(command.toUpperCase());
+    return level == null ? -1 : level;
+  }
+
+  // Fills the system command table used by handleSystemMsg()
+  private void registerSystemCommands() {
+
+    for (String command : new String[]{"getVersion", "getTime", "getMovieCount", "getUserCount", "getMovies",
+        "restart", "shutdown", "disable", "enable", "disconnectAll", "sendEmail"}) {
+      registerCommand("System.Server." + command, this::serverCommand, null);
+    }
+    for (String command : new String[]{"enable", "disable", "delete", "getGroupCount", "getGroups", "getUserCount",
+        "getScriptCount", "reloadAllScripts", "reloadScript", "deleteScript"}) {
+      registerCommand("System.Movie." + command, this::movieCommand, null);
+    }
+    for (String command : new String[]{"setAttribute", "getAttribute", "getAttributeNames", "deleteAttribute",
+        "createUniqueName", "enable", "disable", "delete", "getUsers", "getUserCount", "join", "leave"}) {
+      registerCommand("System.Group." + command, this::groupCommand, null);
+    }
+    for (String command : new String[]{"delete", "getAddress", "changeMovie", "getGroupCount", "getGroups"}) {
+      registerCommand("System.User." + command, this::userCommand, null);
+    }
+
+    // Unknown commands of these categories still get a reply
+    registerCommand("System.Server", this::serverCommand, null);
+    registerCommand("System.Movie", this::movieCommand, null);
+    registerCommand("System.Group", this::groupCommand, null);
+    registerCommand("System.User", this::userCommand, null);
+
+    // Database and SQL commands are processed by their own connections
+    SystemCommand database = (user, args, msg, reply) -> server.m_dbConn.deliver(user, this, args, msg, reply);
+    for (String category : new String[]{"DBAdmin", "DBUser", "DBPlayer", "DBApplication"}) {
+      registerCommand("System." + category, database, null);
+    }
+    registerCommand("System.SQL", (user, args, msg, reply) -> server.m_sqlConn.deliver(user, this, args, msg, reply), null);
+    registerCommand("System.Script", this::scriptCommand, null);
+
+    registerConfiguredCommands();
+  }
+
+  // Every other command of a category with a userlevel property gets an entry of its own, so its level is
+  // resolved once. Commands only found through their category have no userlevel property.
+  private void registerConfiguredCommands() {
+
+    for (String key : userLevelCache.keySet()) {
+      if (systemCommands.contains(key)) continue;
+      MUSSystemCommands.Command category = systemCommands.find(key);
+      if (category != null && category.isCategory())
+        registerCommand(key, category.m_handler, null);
+    }
+  }
+
+  /**
+   * Adds a system command, or a category of commands such as "System.DBAdmin", to this movie.
+   * The required user level is read from the UserLevel property of the command.
+   * <BR>Reserved for internal use of OpenSMUS. Scripts should use ServerSideScript.registerCommand().
+   */
+  void registerCommand(String name, SystemCommand handler, Object owner) {
+    systemCommands.register(name, handler, owner, configuredUserLevel(name));
+  }
+
+  /**
+   * Removes a system command added with registerCommand().
+   * <BR>Reserved for internal use of OpenSMUS.
+   */
+  void unregisterCommand(String name) {
+    systemCommands.unregister(name);
+    registerConfiguredCommands(); // Back to the entry for its userlevel property, if it has one
+  }
+
+  // Removes the commands registered by a script
+  private void unregisterCommands(ServerSideScript script) {
+    systemCommands.unregisterAll(script);
+    registerConfiguredCommands();
   }
 
   public int getRequiredUserLevel(String command) {
@@ -645,98 +732,139 @@ public class MUSMovie implements ServerMovie {
   public void handleMsg(ServerUser user, MUSMessage msg) {
 
     // user.testMessage();
-    Enumeration<MUSMsgHeaderString> recipients = msg.m_recptID.elements();
-    String recpt;
-    while (recipients.hasMoreElements()) {
-      MUSMsgHeaderString MUSrecpt = recipients.nextElement();
-      recpt = MUSrecpt.toString();
-
-      // Check if the message is addressed to this movie or another one
-      if (recpt.indexOf("@", 1) != -1) {
-        MUSLog.Log("message received to another movie", MUSLog.kDeb);
-        int cutPoint = recpt.indexOf("@", 1);
-        String tgtMovie = recpt.substring(cutPoint + 1);
-        String urecpt = recpt.substring(0, cutPoint);
-
-        // Make it into a LList in order to be compatible with the
-        // return value from srvcmd_getMovies
-        LList movlist = new LList();
-
-        if (tgtMovie.equalsIgnoreCase("AllMovies"))
-          movlist = (LList) server.srvcmd_getMovies();
-        else
-          movlist.addElement(new LString(tgtMovie));
-
-        for (int e = 0; e < movlist.count(); e++) {
-          LString movname = (LString) movlist.getElementAt(e);
-          MUSMovie wmov;
-          try {
-            wmov = server.getMovie(movname.toString());
-            if (!movname.toString().equalsIgnoreCase(name()))
-              msg.m_senderID = new MUSMsgHeaderString(user.name() + "@" + name());
-            wmov.handleLocalMsg(user, urecpt, msg);
-          } catch (MovieNotFoundException mnf) {
-            // Fail silently
-          }
-        }
-      } else {
-        // Handle message in this movie
-        handleLocalMsg(user, recpt, msg);
+    // Connections remember the recipients they sent to last, see MUSRecipientCache
+    MUSRecipientCache cache = user instanceof MUSUser mu ? mu.m_recipientCache : null;
+    List<MUSMsgHeaderString> recipients = msg.m_recptID.m_stringlist;
+    for (int r = 0; r < recipients.size(); r++) {
+      MUSMsgHeaderString recpt = recipients.get(r);
+      int generation = server.routingGeneration(); // Read before resolving, so routes resolved during a removal are not kept
+
+      MUSRecipientCache.Route route = cache != null ? cache.get(recpt, this, generation) : null;
+      if (route == null) {
+        route = resolveRecipient(user, recpt.toString(), generation);
+        if (cache != null && route != null && route.isComplete()) cache.put(recpt, route);
+      }
+
+      for (; route != null; route = route.m_next) {
+        route.m_movie.deliver(user, route, msg);
       }
     }
 
   }
 
-  public void handleLocalMsg(ServerUser user, String recpt, MUSMessage msg) {
+  // Finds the movies, users and groups a recipient refers to. Returns null if the movie doesn't exist.
+  private MUSRecipientCache.Route resolveRecipient(ServerUser user, String recpt, int generation) {
+
+    // Check if the message is addressed to this movie or another one
+    int cutPoint = recpt.indexOf("@", 1);
+    if (cutPoint == -1)
+      return resolveLocal(recpt, null, generation);
+
+    MUSLog.Log("message received to another movie", MUSLog.kDeb);
+    String tgtMovie = recpt.substring(cutPoint + 1);
+    String urecpt = recpt.substring(0, cutPoint);
 
-    if (recpt.regionMatches(true, 0, "system.", 0, 7)) {  // toLowerCase().startsWith("system.")
-      handleSystemMsg(user, recpt, msg);
+    Collection<MUSMovie> movies;
+    if (tgtMovie.equalsIgnoreCase("AllMovies")) {
+      movies = server.m_movielist.values();
+    } else {
+      try {
+        movies = List.of(server.getMovie(tgtMovie));
+      } catch (MovieNotFoundException mnf) {
+        return null; // Fail silently
+      }
+    }
+
+    MUSRecipientCache.Route first = null;
+    MUSRecipientCache.Route last = null;
+    MUSMsgHeaderString sender = null;
+    for (MUSMovie wmov : movies) {
+      if (sender == null && !wmov.name().equalsIgnoreCase(name()))
+        sender = new MUSMsgHeaderString(user.name() + "@" + name());
+
+      // Once the sender has been renamed it stays renamed for the following movies
+      MUSRecipientCache.Route route = wmov.resolveLocal(urecpt, sender, generation);
+      if (first == null) first = route;
+      else last.m_next = route;
+      last = route;
+    }
+    return first;
+  }
+
+  // Finds the user, group or system command a recipient in this movie refers to.
+  // The route has no target if there is none, messages to it are still rejected if the user may not send messages.
+  private MUSRecipientCache.Route resolveLocal(String recpt, MUSMsgHeaderString sender, int generation) {
+
+    if (recpt.regionMatches(true, 0, "system.", 0, 7))  // toLowerCase().startsWith("system.")
+      return new MUSRecipientCache.Route(generation, this, sender, recpt, null, null, null);
+
+    // Determine if it's to a group or to a user.
+    try {
+      if (recpt.startsWith("@"))
+        return new MUSRecipientCache.Route(generation, this, sender, null, getGroup(recpt), null, null);
+
+      ServerUser thisuser = getUser(recpt);
+      MUSMsgHeaderString header = thisuser instanceof MUSUser mu ? mu.nameHeader() : new MUSMsgHeaderString(thisuser.name());
+      return new MUSRecipientCache.Route(generation, this, sender, null, null, thisuser, header);
+    } catch (GroupNotFoundException | UserNotFoundException | MUSErrorCode e) {
+      // Here we could return "no such user" errors to the sender...
+      return new MUSRecipientCache.Route(generation, this, sender, null, null, null, null);
+    }
+  }
+
+  // Delivers a message to a recipient resolved in this movie
+  private void deliver(ServerUser user, MUSRecipientCache.Route route, MUSMessage msg) {
+
+    if (route.m_sender != null)
+      msg.m_senderID = route.m_sender;
+
+    if (route.m_recpt != null) {
+      handleSystemMsg(user, route.m_recpt, msg);
       return;
     }
 
     if (user.userLevel() < messagingLevel) { // Ignore messages if user hasn't got enough privs.
       MUSLog.Log("REJECTED MSG: " + user + ": " + msg, MUSLog.kDeb);
-      msg.m_msgContent = new LVoid();
+      msg.m_msgContent = LVoid.VOID;
       msg.m_errCode = MUSErrorCode.NotPermittedWithUserLevel;
       user.sendMessage(msg);
       return;
     }
 
-    // User cleared to send messages. Determine if it's to a group or to a user.
-    if (recpt.startsWith("@")) {
-      handleGroupMsg(user, recpt, msg);
-    } else {
-      // Message to a specific user
+    // User cleared to send messages
+    if (route.m_group != null) {
+      sendGroupMsg(user, route.m_group, msg);
+    } else if (route.m_user != null) {
+      // The original message may have multiple recipients, so each one gets a forwarded copy
+      // that shares the encoded subject, sender and content with the original
+      MUSMessage fwd = msg.forward(route.m_userHeader, server.timeStamp());
       try {
-        // @TODO: Try and get rid of this extra creation of a new MUSMessage object and use the original one
-        // will be tricky if the original message has multiple recipients...
-        ServerUser thisuser = getUser(recpt);
-        MUSMessage reply = new MUSMessage(msg);
-        reply.m_timeStamp = server.timeStamp();
-        reply.m_recptID = new MUSMsgHeaderStringList();
-        reply.m_recptID.addElement(new MUSMsgHeaderString(thisuser.name()));
-        reply.m_udp = msg.m_udp;
-        thisuser.sendMessage(reply);
-      } catch (UserNotFoundException unf) {
-        // Here we could return "no such user" errors to the sender...
+        route.m_user.sendMessage(fwd);
+      } finally {
+        fwd.release();
       }
     }
   }
 
+  public void handleLocalMsg(ServerUser user, String recpt, MUSMessage msg) {
+
+    deliver(user, resolveLocal(recpt, null, server.routingGeneration()), msg);
+  }
+
   public void handleSystemMsg(ServerUser user, String recpt, MUSMessage msg) {
+    // System commands, scripts and the database all read the message content
+    msg.decodeContent();
     try {
-      StringTokenizer st = new StringTokenizer(recpt, ".");
-      if (st.countTokens() != 3) { // Recipient must be in the form "system.x.y"
+      // One lookup finds the handler and required user level of the command
+      MUSSystemCommands.Command command = systemCommands.find(recpt);
+      if (command == null) { // Recipient must be a command in the form "system.x.y"
         // @TODO: The original SMUS 3 allowed messages to "system.script" (only 2 tokens)
         // Bad package, return
         return;
       }
 
-      String[] args = new String[3];
-      // We know there are exactly 3 tokens, put them into an array
-      args[0] = st.nextToken();
-      args[1] = st.nextToken();
-      args[2] = st.nextToken();
+      // Commands that are only handled by their category are split here
+      String[] args = command.isCategory() ? recpt.split("\\.") : command.m_args;
 
       MUSMessage reply = new MUSMessage();
       reply.m_errCode = 0;
@@ -752,641 +880,651 @@ public class MUSMovie implements ServerMovie {
       msg.m_timeStamp = server.timeStamp();
 
       // Check if the userlevel is enough
-      try {
-        Integer reqlevel = userLevelCache.get(recpt.toUpperCase());
-        if (reqlevel > user.userLevel()) {
-          msg.m_msgContent = new LVoid(); // Clear contents to avoid bandwidth flooding with large messages
-          msg.m_errCode = MUSErrorCode.NotPermittedWithUserLevel;
-          user.sendMessage(msg); // @TODO: Bug? Recipient will be listed as "system"...
-          return;
-        }
-      } catch (NullPointerException nl) {
+      int reqlevel = command.isCategory() ? -1 : command.m_level; // See registerConfiguredCommands()
+      if (reqlevel < 0) {
         // An invalid command, for which no userlevel exists
         // if (! args[1].equalsIgnoreCase("script")) // Exclude system.script.x commands
         MUSLog.Log("Warning: no user level found for command " + recpt, MUSLog.kDeb);
-      }
-
-      // Special function to process Database messages
-      if (args[1].equalsIgnoreCase("DBAdmin") ||
-              args[1].equalsIgnoreCase("DBUser") ||
-              args[1].equalsIgnoreCase("DBPlayer") ||
-              args[1].equalsIgnoreCase("DBApplication")
-      ) {
-        server.m_dbConn.deliver(user, this, args, msg, reply); // handleDatabaseMsg
+      } else if (reqlevel > user.userLevel()) {
+        msg.m_msgContent = LVoid.VOID; // Clear contents to avoid bandwidth flooding with large messages
+        msg.m_errCode = MUSErrorCode.NotPermittedWithUserLevel;
+        user.sendMessage(msg); // @TODO: Bug? Recipient will be listed as "system"...
         return;
       }
 
-      // Special function to process SQL messages
-      if (args[1].equalsIgnoreCase("SQL")) {
-        server.m_sqlConn.deliver(user, this, args, msg, reply); // handleDatabaseMsg
-        return;
+      // Commands registered by scripts get a message they may keep after it has been recycled
+      command.m_handler.execute(user, args, command.m_owner != null ? msg.detach() : msg, reply);
+
+    } catch (NullPointerException e) {
+      MUSLog.Log(e.toString(), MUSLog.kSys);
+      MUSLog.Log("Null exception in Dispatcher: " + msg, MUSLog.kSys);
+      StringBuilder exception = new StringBuilder();
+      for (StackTraceElement element : e.getStackTrace()) {
+        exception.append(element.toString()).append("\n");
       }
+      MUSLog.Log("Stacktrace: " + exception, MUSLog.kSys);
+    }
+
+  }
 
-      if (args[1].equalsIgnoreCase("server")) {
-        if (args[2].equalsIgnoreCase("getVersion")) {
-          reply.m_msgContent = server.srvcmd_getVersion();
-        } else if (args[2].equalsIgnoreCase("getTime")) {
-          reply.m_msgContent = new LString(server.timeString());
-        } else if (args[2].equalsIgnoreCase("getMovieCount")) {
-          reply.m_msgContent = new LInteger(server.serverMovieCount());
-        } else if (args[2].equalsIgnoreCase("getUserCount")) {
-          reply.m_msgContent = server.srvcmd_getUserCount();
-        } else if (args[2].equalsIgnoreCase("getMovies")) {
-          reply.m_msgContent = server.srvcmd_getMovies();
+  // system.server.* commands
+  private void serverCommand(ServerUser user, String[] args, MUSMessage msg, MUSMessage reply) {
+    switch (args[2]) {
+      case "getVersion" -> reply.m_msgContent = server.srvcmd_getVersion();
+      case "getTime" -> reply.m_msgContent = new LString(server.timeString());
+      case "getMovieCount" -> reply.m_msgContent = LInteger.valueOf(server.serverMovieCount());
+      case "getUserCount" -> reply.m_msgContent = server.srvcmd_getUserCount();
+      case "getMovies" -> reply.m_msgContent = server.srvcmd_getMovies();
+      // OpenSMUS specific
+      case "restart" -> {
+        new MUSKillServerTimer(server, 15000);
+        reply.m_msgContent = new LString("ServerRestarted");
+      }
+      case "shutdown" -> {
+        new MUSShutdownServerTimer(server, 10000);
+        reply.m_msgContent = new LString("ServerRestarted");
+      }
+      case "disable" -> {
+        server.disable();
+        reply.m_msgContent = new LString("ServerDisabled");
+      }
+      case "enable" -> {
+        server.enable();
+        reply.m_msgContent = new LString("ServerEnabled");
+      }
+      case "disconnectAll" -> {
+        server.disconnectAllUsers();
+        reply.m_msgContent = new LString("DisconnectAll");
+      }
+      /* case "setFloodParameters" -> { // Kinda kludgy at the moment
+        LValue msgcont = msg.m_msgContent;
+        if (msgcont.getType() != LValue.vt_List) {
+            // Error, we need a list
+            reply.m_errCode = MUSErrorCode.BadParameter;
+            reply.m_msgContent = LInteger.valueOf(0);
+            user.sendMessage(reply);
+            return;
         }
 
-        // OpenSMUS specific
-
-        else if (args[2].equalsIgnoreCase("restart")) {
-          new MUSKillServerTimer(server, 15000);
-          reply.m_msgContent = new LString("ServerRestarted");
-        } else if (args[2].equalsIgnoreCase("shutdown")) {
-          new MUSShutdownServerTimer(server, 10000);
-          reply.m_msgContent = new LString("ServerRestarted");
-        } else if (args[2].equalsIgnoreCase("disable")) {
-          server.disable();
-          reply.m_msgContent = new LString("ServerDisabled");
-        } else if (args[2].equalsIgnoreCase("enable")) {
-          server.enable();
-          reply.m_msgContent = new LString("ServerEnabled");
-        } else if (args[2].equalsIgnoreCase("disconnectAll")) {
-          server.disconnectAllUsers();
-          reply.m_msgContent = new LString("DisconnectAll");
-        } /*else if (args[2].equalsIgnoreCase("setFloodParameters")) { // Kinda kludgy at the moment
-                    LValue msgcont = msg.m_msgContent;
-                    if (msgcont.getType() != LValue.vt_List) {
-                        // Error, we need a list
-                        reply.m_errCode = MUSErrorCode.BadParameter;
-                        reply.m_msgContent = new LInteger(0);
-                        user.sendMessage(reply);
-                        return;
-                    }
-
-                    LList params = (LList) msgcont;
-
-                    if (params.count() < 3) {
-                        // Error, we need 3 values
-                        reply.m_errCode = MUSErrorCode.BadParameter;
-                        reply.m_msgContent = new LInteger(0);
-                        user.sendMessage(reply);
-                        return;
-                    }
-                    // Assume the list contents are integers
-                    int minTime = params.getElementAt(0).toInteger();
-                    int tolerance = params.getElementAt(1).toInteger();
-                    int repeat = params.getElementAt(2).toInteger();
-
-                    ((SMUSPipelineFactory) m_server.m_ports.firstElement().bootstrap.getPipelineFactory()).setFloodParameters(minTime, tolerance, repeat);
-                    reply.m_msgContent = new LString("Flood filter parameters updated to " + minTime +" "+ tolerance +" "+ repeat);
-                }*/ else if (args[2].equalsIgnoreCase("sendEmail")) {
-          // Command requires a property list
-          LValue msgcont = msg.m_msgContent;
-          if (msgcont.getType() != LValue.vt_PropList) {
-            // Error, we need a proplist
+        LList params = (LList) msgcont;
+
+        if (params.count() < 3) {
+            // Error, we need 3 values
             reply.m_errCode = MUSErrorCode.BadParameter;
-            reply.m_msgContent = new LInteger(0);
+            reply.m_msgContent = LInteger.valueOf(0);
             user.sendMessage(reply);
             return;
-          }
+        }
+        // Assume the list contents are integers
+        int minTime = params.getElementAt(0).toInteger();
+        int tolerance = params.getElementAt(1).toInteger();
+        int repeat = params.getElementAt(2).toInteger();
+
+        ((SMUSPipelineFactory) m_server.m_ports.firstElement().bootstrap.getPipelineFactory()).setFloodParameters(minTime, tolerance, repeat);
+        reply.m_msgContent = new LString("Flood filter parameters updated to " + minTime +" "+ tolerance +" "+ repeat);
+      } */
+      case "sendEmail" -> {
+        // Command requires a property list
+        LValue msgcont = msg.m_msgContent;
+        if (msgcont.getType() != LValue.vt_PropList) {
+          // Error, we need a proplist
+          reply.m_errCode = MUSErrorCode.BadParameter;
+          reply.m_msgContent = LInteger.valueOf(0);
+          user.sendMessage(reply);
+          return;
+        }
 
-          LPropList plist = (LPropList) msgcont;
-          LValue argsender;
-          LValue argrecpt;
-          LValue argsubject;
-          LValue argsmtphost;
-          LValue argdata;
+        LPropList plist = (LPropList) msgcont;
+        LValue argsender;
+        LValue argrecpt;
+        LValue argsubject;
+        LValue argsmtphost;
+        LValue argdata;
 
+        try {
           try {
-            try {
-              argsender = plist.getElement(new LSymbol("sender"));
-              argrecpt = plist.getElement(new LSymbol("recpt"));
-              argsubject = plist.getElement(new LSymbol("subject"));
-              argsmtphost = plist.getElement(new LSymbol("smtphost"));
-              argdata = plist.getElement(new LSymbol("data"));
-            } catch (PropertyNotFoundException pnf) {
-              // All properties are needed
-              throw new MUSErrorCode(MUSErrorCode.BadParameter);
-            }
-
-            // Check types for arguments
-            if (argsender.getType() != LValue.vt_String ||
-                    argrecpt.getType() != LValue.vt_String ||
-                    argsubject.getType() != LValue.vt_String ||
-                    argsmtphost.getType() != LValue.vt_String ||
-                    argdata.getType() != LValue.vt_List) {
-              throw new MUSErrorCode(MUSErrorCode.BadParameter);
-            }
+            argsender = plist.getElement(LSymbol.intern("sender"));
+            argrecpt = plist.getElement(LSymbol.intern("recpt"));
+            argsubject = plist.getElement(LSymbol.intern("subject"));
+            argsmtphost = plist.getElement(LSymbol.intern("smtphost"));
+            argdata = plist.getElement(LSymbol.intern("data"));
+          } catch (PropertyNotFoundException pnf) {
+            // All properties are needed
+            throw new MUSErrorCode(MUSErrorCode.BadParameter);
+          }
 
-            LList argdatalist = (LList) argdata;
-            String[] datalist = new String[argdatalist.count()];
+          // Check types for arguments
+          if (argsender.getType() != LValue.vt_String ||
+                  argrecpt.getType() != LValue.vt_String ||
+                  argsubject.getType() != LValue.vt_String ||
+                  argsmtphost.getType() != LValue.vt_String ||
+                  argdata.getType() != LValue.vt_List) {
+            throw new MUSErrorCode(MUSErrorCode.BadParameter);
+          }
 
-            for (int i = 0; i < argdatalist.count(); i++) {
-              datalist[i] = argdatalist.getElementAt(i).toString();
-            }
+          LList argdatalist = (LList) argdata;
+          String[] datalist = new String[argdatalist.count()];
 
-            new MUSEmail(argsender.toString(), argrecpt.toString(), argsubject.toString(), argsmtphost.toString(), datalist);
-            reply.m_msgContent = new LString("EmailAccepted");
-          } catch (MUSErrorCode err) {
-            reply.m_errCode = err.m_errCode;
-            reply.m_msgContent = new LInteger(0);
-            user.sendMessage(reply);
-            return;
+          for (int i = 0; i < argdatalist.count(); i++) {
+            datalist[i] = argdatalist.getElementAt(i).toString();
           }
 
+          new MUSEmail(argsender.toString(), argrecpt.toString(), argsubject.toString(), argsmtphost.toString(), datalist);
+          reply.m_msgContent = new LString("EmailAccepted");
+        } catch (MUSErrorCode err) {
+          reply.m_errCode = err.m_errCode;
+          reply.m_msgContent = LInteger.valueOf(0);
+          user.sendMessage(reply);
+          return;
         }
+      }
+    }
+    user.sendMessage(reply);
+  }
+
+  // system.movie.* commands
+  private void movieCommand(ServerUser user, String[] args, MUSMessage msg, MUSMessage reply) {
+    // All movie commands take the same content list
+    LList contlist = new LList();
+    GetStringListFromContents(contlist, msg.m_msgContent);
+
+    // Enable, disable and delete require at least one string
+    if (args[2].equals("enable") || args[2].equals("disable") || args[2].equals("delete")) {
+      // These commands fail if no group is specified
+      if (contlist.count() == 0) {
+        reply.m_errCode = MUSErrorCode.BadParameter;
+        // SMUS 3 replies with a content of 0
+        reply.m_msgContent = LInteger.valueOf(0);
         user.sendMessage(reply);
-      } // End server commands
-
-      else if (args[1].equalsIgnoreCase("movie")) {
-        // All movie commands take the same content list
-        LList contlist = new LList();
-        GetStringListFromContents(contlist, msg.m_msgContent);
-
-        // Enable, disable and delete require at least one string
-        if (args[2].equalsIgnoreCase("enable") ||
-                args[2].equalsIgnoreCase("disable") ||
-                args[2].equalsIgnoreCase("delete")
-        ) {
-          // These commands fail if no group is specified
-          if (contlist.count() == 0) {
-            reply.m_errCode = MUSErrorCode.BadParameter;
-            // SMUS 3 replies with a content of 0
-            reply.m_msgContent = new LInteger(0);
-            user.sendMessage(reply);
-            return;
-          }
-        }
+        return;
+      }
+    }
 
-        if (args[2].equalsIgnoreCase("enable")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString movname = (LString) contlist.getElementAt(e);
-            server.enableMovie(movname.toString());
-          }
-          user.sendMessage(msg); // @TODO: Bug?
-          return;
-        } else if (args[2].equalsIgnoreCase("disable")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString movname = (LString) contlist.getElementAt(e);
-            server.disableMovie(movname.toString());
-          }
-          user.sendMessage(msg); // @TODO: Bug?
-          return;
-        } else if (args[2].equalsIgnoreCase("delete")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString movname = (LString) contlist.getElementAt(e);
-            MUSMovie thismov;
-            try {
-              thismov = server.getMovie(movname.toString());
-              thismov.removeAllUsers();
-            } catch (MovieNotFoundException mnf) {
-              // Not a problem
-            }
+    switch (args[2]) {
+      case "enable" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString movname = (LString) contlist.getElementAt(e);
+          server.enableMovie(movname.toString());
+        }
+        user.sendMessage(msg); // @TODO: Bug?
+        return;
+      }
+      case "disable" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString movname = (LString) contlist.getElementAt(e);
+          server.disableMovie(movname.toString());
+        }
+        user.sendMessage(msg); // @TODO: Bug?
+        return;
+      }
+      case "delete" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString movname = (LString) contlist.getElementAt(e);
+          MUSMovie thismov;
+          try {
+            thismov = server.getMovie(movname.toString());
+            thismov.removeAllUsers();
+          } catch (MovieNotFoundException mnf) {
+            // Not a problem
           }
-          user.sendMessage(msg); // @TODO: Bug?
-          return;
         }
+        user.sendMessage(msg); // @TODO: Bug?
+        return;
+      }
+    }
 
-        // Remaining movie commands are addressed to the current movie if none is specified
-        if (contlist.count() == 0) {
-          contlist.addElement(new LString(name));
-        }
+    // Remaining movie commands are addressed to the current movie if none is specified
+    if (contlist.count() == 0) {
+      contlist.addElement(new LString(name));
+    }
 
-        if (args[2].equalsIgnoreCase("getGroupCount")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString movname = (LString) contlist.getElementAt(e);
-            MUSMovie thismov;
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
-            try {
-              thismov = server.getMovie(movname.toString());
-              onereply.m_errCode = 0;
-              onereply.m_msgContent = thismov.srvcmd_getGroupCount();
-            } catch (MovieNotFoundException mnf) {
-              LPropList pl = new LPropList();
-              onereply.m_errCode = MUSErrorCode.InvalidMovieID;
-              pl.addElement(new LSymbol("movieID"), new LString(movname.toString()));
-              pl.addElement(new LSymbol("numberGroups"), new LInteger(0));
-              onereply.m_msgContent = pl;
-            }
-            user.sendMessage(onereply);
+    switch (args[2]) {
+      case "getGroupCount" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString movname = (LString) contlist.getElementAt(e);
+          MUSMovie thismov;
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          try {
+            thismov = server.getMovie(movname.toString());
+            onereply.m_errCode = 0;
+            onereply.m_msgContent = thismov.srvcmd_getGroupCount();
+          } catch (MovieNotFoundException mnf) {
+            LPropList pl = new LPropList();
+            onereply.m_errCode = MUSErrorCode.InvalidMovieID;
+            pl.addElement(LSymbol.intern("movieID"), new LString(movname.toString()));
+            pl.addElement(LSymbol.intern("numberGroups"), LInteger.valueOf(0));
+            onereply.m_msgContent = pl;
           }
-        } else if (args[2].equalsIgnoreCase("getGroups")) {
+          user.sendMessage(onereply);
+        }
+      }
+      case "getGroups" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString movname = (LString) contlist.getElementAt(e);
+          MUSMovie thismov;
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          try {
+            thismov = server.getMovie(movname.toString());
+            onereply.m_errCode = 0;
+            onereply.m_msgContent = thismov.srvcmd_getGroups();
+          } catch (MovieNotFoundException mnf) {
+            LPropList pl = new LPropList();
+            onereply.m_errCode = MUSErrorCode.BadParameter;
+            pl.addElement(LSymbol.intern("movieID"), new LString(movname.toString()));
+            pl.addElement(LSymbol.intern("groups"), new LList());
+            onereply.m_msgContent = pl;
+          }
+          user.sendMessage(onereply);
+        }
+      }
+      case "getUserCount" -> {
+        //try {
           for (int e = 0; e < contlist.count(); e++) {
             LString movname = (LString) contlist.getElementAt(e);
             MUSMovie thismov;
-            reply.m_msgContent = new LVoid();
+            reply.m_msgContent = LVoid.VOID;
             MUSMessage onereply = new MUSMessage(reply);
             try {
               thismov = server.getMovie(movname.toString());
               onereply.m_errCode = 0;
-              onereply.m_msgContent = thismov.srvcmd_getGroups();
+              onereply.m_msgContent = thismov.srvcmd_getUserCount();
             } catch (MovieNotFoundException mnf) {
               LPropList pl = new LPropList();
               onereply.m_errCode = MUSErrorCode.BadParameter;
-              pl.addElement(new LSymbol("movieID"), new LString(movname.toString()));
-              pl.addElement(new LSymbol("groups"), new LList());
+              pl.addElement(LSymbol.intern("movieID"), new LString(movname.toString()));
+              pl.addElement(LSymbol.intern("numberMembers"), LInteger.valueOf(0));
               onereply.m_msgContent = pl;
             }
             user.sendMessage(onereply);
           }
-        } else if (args[2].equalsIgnoreCase("getUserCount")) {
-          //try {
-            for (int e = 0; e < contlist.count(); e++) {
-              LString movname = (LString) contlist.getElementAt(e);
-              MUSMovie thismov;
-              reply.m_msgContent = new LVoid();
-              MUSMessage onereply = new MUSMessage(reply);
-              try {
-                thismov = server.getMovie(movname.toString());
-                onereply.m_errCode = 0;
-                onereply.m_msgContent = thismov.srvcmd_getUserCount();
-              } catch (MovieNotFoundException mnf) {
-                LPropList pl = new LPropList();
-                onereply.m_errCode = MUSErrorCode.BadParameter;
-                pl.addElement(new LSymbol("movieID"), new LString(movname.toString()));
-                pl.addElement(new LSymbol("numberMembers"), new LInteger(0));
-                onereply.m_msgContent = pl;
-              }
-              user.sendMessage(onereply);
-            }
-          /*} catch (GroupNotFoundException gnf) {
-            // Should not happen, we are querying for the allusers group
-          }*/
+        /*} catch (GroupNotFoundException gnf) {
+          // Should not happen, we are querying for the allusers group
+        }*/
+      }
+      // OpenSMUS specific
+      case "getScriptCount" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          String movname = contlist.getElementAt(e).toString();
+          MUSMovie thismov;
+          try {
+            thismov = server.getMovie(movname);
+            onereply.m_errCode = 0;
+            onereply.m_msgContent = LInteger.valueOf(thismov.scripts.size());
+          } catch (MovieNotFoundException mnf) {
+            LPropList pl = new LPropList();
+            onereply.m_errCode = MUSErrorCode.InvalidMovieID;
+            pl.addElement(LSymbol.intern("movieID"), new LString(movname));
+            pl.addElement(LSymbol.intern("numberScripts"), LInteger.valueOf(0));
+            onereply.m_msgContent = pl;
+          }
+          user.sendMessage(onereply);
         }
+      }
+      case "reloadAllScripts" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          String movname = contlist.getElementAt(e).toString();
+          MUSMovie thismov;
 
-        // OpenSMUS specific
+          try {
+            thismov = server.getMovie(movname);
+            onereply.m_errCode = 0;
 
-        else if (args[2].equalsIgnoreCase("getScriptCount")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
-            String movname = contlist.getElementAt(e).toString();
-            MUSMovie thismov;
-            try {
-              thismov = server.getMovie(movname);
-              onereply.m_errCode = 0;
-              onereply.m_msgContent = new LInteger(thismov.scripts.size());
-            } catch (MovieNotFoundException mnf) {
-              LPropList pl = new LPropList();
-              onereply.m_errCode = MUSErrorCode.InvalidMovieID;
-              pl.addElement(new LSymbol("movieID"), new LString(movname));
-              pl.addElement(new LSymbol("numberScripts"), new LInteger(0));
-              onereply.m_msgContent = pl;
+            // Remove all scripts
+            for (ServerSideScript script : scripts) {
+              this.deleteServerSideScript(script.getClass().getName());
             }
-            user.sendMessage(onereply);
-          }
-        } else if (args[2].equalsIgnoreCase("reloadAllScripts")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
-            String movname = contlist.getElementAt(e).toString();
-            MUSMovie thismov;
-
-            try {
-              thismov = server.getMovie(movname);
-              onereply.m_errCode = 0;
 
-              // Remove all scripts
-              for (ServerSideScript script : scripts) {
-                this.deleteServerSideScript(script.getClass().getName());
-              }
+            // Start up the scripts again
+            thismov.createAllServerSideScripts();
 
-              // Start up the scripts again
-              thismov.createAllServerSideScripts();
-
-            } catch (MovieNotFoundException mnf) {
-              LPropList pl = new LPropList();
-              onereply.m_errCode = MUSErrorCode.InvalidMovieID;
-              pl.addElement(new LSymbol("movieID"), new LString(movname));
-              onereply.m_msgContent = pl;
-            }
-            user.sendMessage(onereply);
+          } catch (MovieNotFoundException mnf) {
+            LPropList pl = new LPropList();
+            onereply.m_errCode = MUSErrorCode.InvalidMovieID;
+            pl.addElement(LSymbol.intern("movieID"), new LString(movname));
+            onereply.m_msgContent = pl;
           }
-
-        } else if (args[2].equalsIgnoreCase("reloadScript")) {
-          // Always work on the current movie. The contents is a list of script class names to reload.
-          for (int e = 0; e < contlist.count(); e++) {
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
-            onereply.m_errCode = 0;
-            String scriptName = contlist.getElementAt(e).toString();
-            onereply.m_msgContent = new LString(scriptName);
-
-            this.deleteServerSideScript(scriptName);
-            // Start up the script again
-            if (!this.createServerSideScript(scriptName)) {
-              onereply.m_errCode = MUSErrorCode.InvalidMovieID; // @TODO: Fix errorcode
-            }
-            user.sendMessage(onereply);
+          user.sendMessage(onereply);
+        }
+      }
+      case "reloadScript" -> {
+        // Always work on the current movie. The contents is a list of script class names to reload.
+        for (int e = 0; e < contlist.count(); e++) {
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          onereply.m_errCode = 0;
+          String scriptName = contlist.getElementAt(e).toString();
+          onereply.m_msgContent = new LString(scriptName);
+
+          this.deleteServerSideScript(scriptName);
+          // Start up the script again
+          if (!this.createServerSideScript(scriptName)) {
+            onereply.m_errCode = MUSErrorCode.InvalidMovieID; // @TODO: Fix errorcode
           }
-        } else if (args[2].equalsIgnoreCase("deleteScript")) {
-          // Always work on the current movie. The contents is a list of script class names to delete.
-          for (int e = 0; e < contlist.count(); e++) {
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
-            onereply.m_errCode = 0;
-            String scriptName = contlist.getElementAt(e).toString();
-            onereply.m_msgContent = new LString(scriptName);
-
-            if (!this.deleteServerSideScript(scriptName)) {
-              // No such script found
-              onereply.m_errCode = MUSErrorCode.InvalidMovieID; // @TODO: Fix errorcode
-            }
-            user.sendMessage(onereply);
+          user.sendMessage(onereply);
+        }
+      }
+      case "deleteScript" -> {
+        // Always work on the current movie. The contents is a list of script class names to delete.
+        for (int e = 0; e < contlist.count(); e++) {
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+          onereply.m_errCode = 0;
+          String scriptName = contlist.getElementAt(e).toString();
+          onereply.m_msgContent = new LString(scriptName);
+
+          if (!this.deleteServerSideScript(scriptName)) {
+            // No such script found
+            onereply.m_errCode = MUSErrorCode.InvalidMovieID; // @TODO: Fix errorcode
           }
+          user.sendMessage(onereply);
         }
+      }
+    }
+  }
 
-      }// End movie commands
-
-      else if (args[1].equalsIgnoreCase("group")) {
-        // Special function to process group Attribute messages
-        if (args[2].equalsIgnoreCase("setAttribute") ||
-                args[2].equalsIgnoreCase("getAttribute") ||
-                args[2].equalsIgnoreCase("getAttributeNames") ||
-                args[2].equalsIgnoreCase("deleteAttribute")
-        ) {
-          handleGroupAttributeMsg(user, args[2], msg, reply);
-          return;
-        }
+  // system.group.* commands
+  private void groupCommand(ServerUser user, String[] args, MUSMessage msg, MUSMessage reply) {
+    // Special function to process group Attribute messages
+    switch (args[2]) {
+      case "setAttribute", "getAttribute", "getAttributeNames", "deleteAttribute" -> {
+        handleGroupAttributeMsg(user, args[2], msg, reply);
+        return;
+      }
+      // createuniquename does not require parameters
+      case "createUniqueName" -> {
+        reply.m_msgContent = srvcmd_createUniqueName();
+        user.sendMessage(reply);
+        return;
+      }
+    }
 
-        // createuniquename does not require parameters
-        else if (args[2].equalsIgnoreCase("createUniqueName")) {
-          reply.m_msgContent = srvcmd_createUniqueName();
-          user.sendMessage(reply);
-          return;
-        }
+    // Most group commands accept a string list
+    LList contlist = new LList();
+    GetStringListFromContents(contlist, msg.m_msgContent);
 
-        // Most group commands accept a string list
-        LList contlist = new LList();
-        GetStringListFromContents(contlist, msg.m_msgContent);
+    // Group commands fail if no group is specified
+    if (contlist.count() == 0) {
+      reply.m_errCode = MUSErrorCode.BadParameter;
+      // SMUS 3 replies with a content of 0
+      reply.m_msgContent = LInteger.valueOf(0);
+      user.sendMessage(reply);
+      return;
+    }
 
-        // Group commands fail if no group is specified
-        if (contlist.count() == 0) {
-          reply.m_errCode = MUSErrorCode.BadParameter;
-          // SMUS 3 replies with a content of 0
-          reply.m_msgContent = new LInteger(0);
-          user.sendMessage(reply);
-          return;
+    switch (args[2]) {
+      case "enable" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          enableGroup(groupname.toString());
         }
-
-        if (args[2].equalsIgnoreCase("enable")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            enableGroup(groupname.toString());
-          }
-          user.sendMessage(msg); // @TODO: Bug?
-        } else if (args[2].equalsIgnoreCase("disable")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            disableGroup(groupname.toString());
-          }
-          user.sendMessage(msg); // @TODO: Bug?
-        } else if (args[2].equalsIgnoreCase("delete")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            MUSGroup thisgroup;
-            try {
-              thisgroup = getGroup(groupname.toString());
-              thisgroup.removeAllUsers();
-            } catch (GroupNotFoundException | MUSErrorCode mnf) {
-              // Not a problem
-            }
+        user.sendMessage(msg); // @TODO: Bug?
+      }
+      case "disable" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          disableGroup(groupname.toString());
+        }
+        user.sendMessage(msg); // @TODO: Bug?
+      }
+      case "delete" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          MUSGroup thisgroup;
+          try {
+            thisgroup = getGroup(groupname.toString());
+            thisgroup.removeAllUsers();
+          } catch (GroupNotFoundException | MUSErrorCode mnf) {
+            // Not a problem
           }
-          user.sendMessage(msg); // @TODO: Bug?
-        } else if (args[2].equalsIgnoreCase("getUsers")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            reply.m_errCode = 0;
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+        }
+        user.sendMessage(msg); // @TODO: Bug?
+      }
+      case "getUsers" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          reply.m_errCode = 0;
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
 
-            try {
-              MUSGroup thisgroup = getGroup(groupname.toString());
-              onereply.m_msgContent = thisgroup.srvcmd_getUsers();
-            } catch (GroupNotFoundException gnf) {
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("groupName"), new LString(groupname.toString()));
-              LList ml = new LList();
-              pl.addElement(new LSymbol("groupMembers"), ml);
-              onereply.m_msgContent = pl;
-            } catch (MUSErrorCode err) {
-              onereply.m_errCode = err.m_errCode;
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("groupName"), new LString(groupname.toString()));
-              LList ml = new LList();
-              pl.addElement(new LSymbol("groupMembers"), ml);
-              onereply.m_msgContent = pl;
-            }
-            user.sendMessage(onereply);
+          try {
+            MUSGroup thisgroup = getGroup(groupname.toString());
+            onereply.m_msgContent = thisgroup.srvcmd_getUsers();
+          } catch (GroupNotFoundException gnf) {
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("groupName"), new LString(groupname.toString()));
+            LList ml = new LList();
+            pl.addElement(LSymbol.intern("groupMembers"), ml);
+            onereply.m_msgContent = pl;
+          } catch (MUSErrorCode err) {
+            onereply.m_errCode = err.m_errCode;
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("groupName"), new LString(groupname.toString()));
+            LList ml = new LList();
+            pl.addElement(LSymbol.intern("groupMembers"), ml);
+            onereply.m_msgContent = pl;
           }
-        } else if (args[2].equalsIgnoreCase("getUserCount")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            reply.m_errCode = 0;
+          user.sendMessage(onereply);
+        }
+      }
+      case "getUserCount" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          reply.m_errCode = 0;
 
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
 
-            try {
-              MUSGroup thisgroup = getGroup(groupname.toString());
-              onereply.m_msgContent = thisgroup.srvcmd_getUserCount();
-            } catch (GroupNotFoundException gnf) {
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("groupName"), new LString(groupname.toString()));
-              pl.addElement(new LSymbol("numberMembers"), new LInteger(0));
-              onereply.m_msgContent = pl;
-            } catch (MUSErrorCode err) {
-              onereply.m_errCode = err.m_errCode;
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("groupName"), new LString(groupname.toString()));
-              onereply.m_msgContent = pl;
-            }
-            user.sendMessage(onereply);
+          try {
+            MUSGroup thisgroup = getGroup(groupname.toString());
+            onereply.m_msgContent = thisgroup.srvcmd_getUserCount();
+          } catch (GroupNotFoundException gnf) {
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("groupName"), new LString(groupname.toString()));
+            pl.addElement(LSymbol.intern("numberMembers"), LInteger.valueOf(0));
+            onereply.m_msgContent = pl;
+          } catch (MUSErrorCode err) {
+            onereply.m_errCode = err.m_errCode;
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("groupName"), new LString(groupname.toString()));
+            onereply.m_msgContent = pl;
           }
-        } else if (args[2].equalsIgnoreCase("join")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+          user.sendMessage(onereply);
+        }
+      }
+      case "join" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
 
-            try {
-              onereply.m_errCode = 0;
-              srvcmd_joinGroup(user, groupname.toString());
-            } catch (MUSErrorCode err) {
-              onereply.m_errCode = err.m_errCode;
-            }
-            onereply.m_msgContent = groupname;
-            user.sendMessage(onereply);
+          try {
+            onereply.m_errCode = 0;
+            srvcmd_joinGroup(user, groupname.toString());
+          } catch (MUSErrorCode err) {
+            onereply.m_errCode = err.m_errCode;
           }
-        } else if (args[2].equalsIgnoreCase("leave")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString groupname = (LString) contlist.getElementAt(e);
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+          onereply.m_msgContent = groupname;
+          user.sendMessage(onereply);
+        }
+      }
+      case "leave" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString groupname = (LString) contlist.getElementAt(e);
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
 
-            try {
-              onereply.m_errCode = 0;
-              srvcmd_leaveGroup(user, groupname.toString());
-            } catch (MUSErrorCode err) {
-              onereply.m_errCode = err.m_errCode;
-            }
-            onereply.m_msgContent = groupname;
-            user.sendMessage(onereply);
+          try {
+            onereply.m_errCode = 0;
+            srvcmd_leaveGroup(user, groupname.toString());
+          } catch (MUSErrorCode err) {
+            onereply.m_errCode = err.m_errCode;
           }
+          onereply.m_msgContent = groupname;
+          user.sendMessage(onereply);
         }
+      }
+    }
+  }
 
-      } else if (args[1].equalsIgnoreCase("user")) {
-        // All user commands take the same content list
-        LList contlist = new LList();
-        GetStringListFromContents(contlist, msg.m_msgContent);
-
-        if (args[2].equalsIgnoreCase("delete")) {
-          // Delete fails if no user is specified
+  // system.user.* commands
+  private void userCommand(ServerUser user, String[] args, MUSMessage msg, MUSMessage reply) {
+    // All user commands take the same content list
+    LList contlist = new LList();
+    GetStringListFromContents(contlist, msg.m_msgContent);
 
-          if (contlist.count() == 0) {
-            reply.m_errCode = MUSErrorCode.BadParameter;
-            // SMUS 3 replies with a content of 0
-            reply.m_msgContent = new LInteger(0);
-            user.sendMessage(reply);
-            return;
-          }
+    switch (args[2]) {
+      case "delete" -> {
+        // Delete fails if no user is specified
 
-          for (int e = 0; e < contlist.count(); e++) {
-            LString username = (LString) contlist.getElementAt(e);
-            ServerUser thisuser;
-            try {
-              thisuser = getUser(username.toString());
-              thisuser.deleteUser();
-            } catch (UserNotFoundException mnf) {
-              // Not a problem
-            }
-          }
-          user.sendMessage(msg); // @TODO: Bug?
+        if (contlist.count() == 0) {
+          reply.m_errCode = MUSErrorCode.BadParameter;
+          // SMUS 3 replies with a content of 0
+          reply.m_msgContent = LInteger.valueOf(0);
+          user.sendMessage(reply);
           return;
-        } else if (args[2].equalsIgnoreCase("getAddress")) {
-          // getAddress fails if no user is specified
-          if (contlist.count() == 0) {
-            reply.m_errCode = MUSErrorCode.BadParameter;
-            // SMUS 3 replies with a content of 0
-            reply.m_msgContent = new LInteger(0);
-            user.sendMessage(reply);
-            return;
-          }
-          for (int e = 0; e < contlist.count(); e++) {
-            LString username = (LString) contlist.getElementAt(e);
-            reply.m_errCode = 0;
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+        }
 
-            try {
-              ServerUser thisuser = getUser(username.toString());
-              LPropList ipl = new LPropList();
-              ipl.addElement(new LSymbol("userID"), new LString(thisuser.name()));
-              ipl.addElement(new LSymbol("ipAddress"), new LString(thisuser.ipAddress()));
-              onereply.m_msgContent = ipl;
-            } catch (UserNotFoundException gnf) {
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("userID"), new LString(username.toString()));
-              pl.addElement(new LSymbol("ipAddress"), new LString("0.0.0.0"));
-              onereply.m_msgContent = pl;
-              onereply.m_errCode = MUSErrorCode.InvalidUserID;
-            }
-            user.sendMessage(onereply);
+        for (int e = 0; e < contlist.count(); e++) {
+          LString username = (LString) contlist.getElementAt(e);
+          ServerUser thisuser;
+          try {
+            thisuser = getUser(username.toString());
+            thisuser.deleteUser();
+          } catch (UserNotFoundException mnf) {
+            // Not a problem
           }
+        }
+        user.sendMessage(msg); // @TODO: Bug?
+        return;
+      }
+      case "getAddress" -> {
+        // getAddress fails if no user is specified
+        if (contlist.count() == 0) {
+          reply.m_errCode = MUSErrorCode.BadParameter;
+          // SMUS 3 replies with a content of 0
+          reply.m_msgContent = LInteger.valueOf(0);
+          user.sendMessage(reply);
           return;
-        } else if (args[2].equalsIgnoreCase("changeMovie")) {
-          // ChangeMovie fails if no user is specified
-          if (contlist.count() == 0) {
-            reply.m_errCode = MUSErrorCode.BadParameter;
-            // SMUS 3 replies with a content of 0
-            reply.m_msgContent = new LInteger(0);
-            user.sendMessage(reply);
-            return;
-          }
-          // Only the first moviename is used
-          LString moviename = (LString) contlist.getElementAt(0);
+        }
+        for (int e = 0; e < contlist.count(); e++) {
+          LString username = (LString) contlist.getElementAt(e);
           reply.m_errCode = 0;
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+
           try {
-            server.changeUserMovie(user, moviename.toString());
-          } catch (MUSErrorCode err) {
-            reply.m_errCode = err.m_errCode;
+            ServerUser thisuser = getUser(username.toString());
+            LPropList ipl = new LPropList();
+            ipl.addElement(LSymbol.intern("userID"), new LString(thisuser.name()));
+            ipl.addElement(LSymbol.intern("ipAddress"), new LString(thisuser.ipAddress()));
+            onereply.m_msgContent = ipl;
+          } catch (UserNotFoundException gnf) {
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("userID"), new LString(username.toString()));
+            pl.addElement(LSymbol.intern("ipAddress"), new LString("0.0.0.0"));
+            onereply.m_msgContent = pl;
+            onereply.m_errCode = MUSErrorCode.InvalidUserID;
           }
-          reply.m_msgContent = moviename;
+          user.sendMessage(onereply);
+        }
+        return;
+      }
+      case "changeMovie" -> {
+        // ChangeMovie fails if no user is specified
+        if (contlist.count() == 0) {
+          reply.m_errCode = MUSErrorCode.BadParameter;
+          // SMUS 3 replies with a content of 0
+          reply.m_msgContent = LInteger.valueOf(0);
           user.sendMessage(reply);
           return;
         }
-
-        // Remaining user commands are addressed to the current user if none is specified
-        if (contlist.count() == 0) {
-          contlist.addElement(new LString(user.name()));
+        // Only the first moviename is used
+        LString moviename = (LString) contlist.getElementAt(0);
+        reply.m_errCode = 0;
+        try {
+          server.changeUserMovie(user, moviename.toString());
+        } catch (MUSErrorCode err) {
+          reply.m_errCode = err.m_errCode;
         }
+        reply.m_msgContent = moviename;
+        user.sendMessage(reply);
+        return;
+      }
+    }
 
-        if (args[2].equalsIgnoreCase("getGroupCount")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString username = (LString) contlist.getElementAt(e);
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
+    // Remaining user commands are addressed to the current user if none is specified
+    if (contlist.count() == 0) {
+      contlist.addElement(new LString(user.name()));
+    }
 
-            try {
-              ServerUser thisuser = getUser(username.toString());
-              LPropList ipl = new LPropList();
-              ipl.addElement(new LSymbol("userID"), new LString(thisuser.name()));
-              ipl.addElement(new LSymbol("numberGroups"), new LInteger(thisuser.getGroupsCount()));
-              onereply.m_msgContent = ipl;
-            } catch (UserNotFoundException gnf) {
-              LPropList pl = new LPropList();
-              onereply.m_errCode = MUSErrorCode.InvalidUserID;
-              pl.addElement(new LSymbol("userID"), new LString(username.toString()));
-              pl.addElement(new LSymbol("numberGroups"), new LInteger(0));
-              onereply.m_msgContent = pl;
-            }
+    switch (args[2]) {
+      case "getGroupCount" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString username = (LString) contlist.getElementAt(e);
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
 
-            user.sendMessage(onereply);
+          try {
+            ServerUser thisuser = getUser(username.toString());
+            LPropList ipl = new LPropList();
+            ipl.addElement(LSymbol.intern("userID"), new LString(thisuser.name()));
+            ipl.addElement(LSymbol.intern("numberGroups"), LInteger.valueOf(thisuser.getGroupsCount()));
+            onereply.m_msgContent = ipl;
+          } catch (UserNotFoundException gnf) {
+            LPropList pl = new LPropList();
+            onereply.m_errCode = MUSErrorCode.InvalidUserID;
+            pl.addElement(LSymbol.intern("userID"), new LString(username.toString()));
+            pl.addElement(LSymbol.intern("numberGroups"), LInteger.valueOf(0));
+            onereply.m_msgContent = pl;
           }
-        } else if (args[2].equalsIgnoreCase("getGroups")) {
-          for (int e = 0; e < contlist.count(); e++) {
-            LString username = (LString) contlist.getElementAt(e);
-            reply.m_msgContent = new LVoid();
-            MUSMessage onereply = new MUSMessage(reply);
 
-            try {
-              ServerUser thisuser = getUser(username.toString());
-              LPropList gpl = new LPropList();
-              gpl.addElement(new LSymbol("userID"), new LString(thisuser.name()));
-              LList cl = new LList();
-              Vector<String> grouplist = thisuser.getGroupNames();
-              for (String groupname : grouplist) {
-                cl.addElement(new LString(groupname));
-              }
-              gpl.addElement(new LSymbol("groups"), cl);
-              onereply.m_msgContent = gpl;
-            } catch (UserNotFoundException gnf) {
-              onereply.m_errCode = MUSErrorCode.InvalidUserID;
-              LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("userID"), username); // new LString(username.toString())
-              LList cl = new LList();
-              pl.addElement(new LSymbol("groups"), cl);
-              onereply.m_msgContent = pl;
+          user.sendMessage(onereply);
+        }
+      }
+      case "getGroups" -> {
+        for (int e = 0; e < contlist.count(); e++) {
+          LString username = (LString) contlist.getElementAt(e);
+          reply.m_msgContent = LVoid.VOID;
+          MUSMessage onereply = new MUSMessage(reply);
+
+          try {
+            ServerUser thisuser = getUser(username.toString());
+            LPropList gpl = new LPropList();
+            gpl.addElement(LSymbol.intern("userID"), new LString(thisuser.name()));
+            LList cl = new LList();
+            Vector<String> grouplist = thisuser.getGroupNames();
+            for (String groupname : grouplist) {
+              cl.addElement(new LString(groupname));
             }
-            user.sendMessage(onereply);
+            gpl.addElement(LSymbol.intern("groups"), cl);
+            onereply.m_msgContent = gpl;
+          } catch (UserNotFoundException gnf) {
+            onereply.m_errCode = MUSErrorCode.InvalidUserID;
+            LPropList pl = new LPropList();
+            pl.addElement(LSymbol.intern("userID"), username); // new LString(username.toString())
+            LList cl = new LList();
+            pl.addElement(LSymbol.intern("groups"), cl);
+            onereply.m_msgContent = pl;
           }
-        }
-      } else if (args[1].equalsIgnoreCase("script")) {
-        // @TODO: Support for targeting specific scripts should be added here
-        for (ServerSideScript script : scripts) {
-          script.incomingMessage(user, msg);
+          user.sendMessage(onereply);
         }
       }
-    } catch (NullPointerException e) {
-      MUSLog.Log(e.toString(), MUSLog.kSys);
-      MUSLog.Log("Null exception in Dispatcher: " + msg, MUSLog.kSys);
-      StringBuilder exception = new StringBuilder();
-      for (StackTraceElement element : e.getStackTrace()) {
-        exception.append(element.toString()).append("\n");
-      }
-      MUSLog.Log("Stacktrace: " + exception, MUSLog.kSys);
     }
+  }
 
+  // system.script.* commands that no script has registered, delivered to every script
+  private void scriptCommand(ServerUser user, String[] args, MUSMessage msg, MUSMessage reply) {
+    // @TODO: Support for targeting specific scripts should be added here
+    MUSMessage detached = msg.detach(); // Scripts may keep the message after it has been recycled
+    for (ServerSideScript script : scripts) {
+      script.incomingMessage(user, detached);
+    }
   }
 
   public void handleGroupAttributeMsg(ServerUser user, String attrcommand, MUSMessage msg, MUSMessage reply) {
@@ -1400,7 +1538,7 @@ public class MUSMovie implements ServerMovie {
     }
     LPropList plist = (LPropList) msgcont;
     try {
-      LValue msggroups = plist.getElement(new LSymbol("group"));
+      LValue msggroups = plist.getElement(LSymbol.intern("group"));
 
       LList groups = new LList();
       GetGroupListFromContents(groups, msggroups);
@@ -1417,7 +1555,7 @@ public class MUSMovie implements ServerMovie {
 
         } catch (GroupNotFoundException | MUSErrorCode gnf) {
           LPropList tl = new LPropList();
-          tl.addElement(new LSymbol("errorCode"), new LInteger(MUSErrorCode.InvalidGroupName));
+          tl.addElement(LSymbol.intern("errorCode"), LInteger.valueOf(MUSErrorCode.InvalidGroupName));
           reply.m_errCode = MUSErrorCode.MessageContainsErrorInfo;
           cl.addElement(new LString(groupname.toString()), tl);
         }
@@ -1438,19 +1576,7 @@ public class MUSMovie implements ServerMovie {
   public void handleGroupMsg(ServerUser user, String recpt, MUSMessage msg) {
 
     try {
-      MUSGroup thisgroup = getGroup(recpt);
-
-      // Safeguard against messages to @AllUsers
-      if (thisgroup == allUsers) {
-        if (user.userLevel() < properties.getIntProperty("MessagingAllUserLevel")) return;
-      }
-
-      MUSMessage reply = new MUSMessage(msg);
-      reply.m_timeStamp = server.timeStamp();
-      reply.m_recptID = new MUSMsgHeaderStringList();
-      reply.m_recptID.addElement(new MUSMsgHeaderString(thisgroup.m_name));
-      reply.m_udp = msg.m_udp;
-      thisgroup.sendMessage(reply);
+      sendGroupMsg(user, getGroup(recpt), msg);
     } catch (GroupNotFoundException gnf) {
       // MUSLog.Log("Group not found in handleGroupMsg " + recpt, MUSLog.kDeb);
     } catch (MUSErrorCode err) {
@@ -1458,6 +1584,21 @@ public class MUSMovie implements ServerMovie {
     }
   }
 
+  private void sendGroupMsg(ServerUser user, MUSGroup thisgroup, MUSMessage msg) {
+
+    // Safeguard against messages to @AllUsers
+    if (thisgroup == allUsers) {
+      if (user.userLevel() < properties.getIntProperty("MessagingAllUserLevel")) return;
+    }
+
+    MUSMessage fwd = msg.forward(thisgroup.m_nameHeader, server.timeStamp());
+    try {
+      thisgroup.sendMessage(fwd);
+    } finally {
+      fwd.release();
+    }
+  }
+
   public void srvcmd_joinGroup(ServerUser user, String gname) throws MUSErrorCode {
     MUSGroup mg;
     try {
@@ -89,24 +89,9 @@ public class MUSMsgContent {
       elemType = ConversionUtils.byteArrayToShort(rawBytes, chunkSize);
       chunkSize = chunkSize + 2;
 
-      newVal = switch (elemType) {
-        case LValue.vt_Integer -> new LInteger();
-        case LValue.vt_Symbol -> new LSymbol();
-        case LValue.vt_String -> new LString();
-        case LValue.vt_Picture -> new LPicture();
-        case LValue.vt_Float -> new LFloat();
-        case LValue.vt_List -> new LList();
-        case LValue.vt_Point -> new LPoint();
-        case LValue.vt_Rect -> new LRect();
-        case LValue.vt_PropList -> new LPropList();
-        case LValue.vt_Color -> new LColor();
-        case LValue.vt_Date -> new LDate();
-        case LValue.vt_Media -> new LMedia();
-        case LValue.vt_3dVector -> new L3dVector();
-        case LValue.vt_3dTransform -> new L3dTransform();
-        default -> new LVoid();
-      };
-      chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, chunkSize);
+      newVal = LValueCodec.newValue(elemType);
+      if (newVal != LVoid.VOID) // Shared, and has no data to decode
+        chunkSize = chunkSize + newVal.extractFromBytes(rawBytes, chunkSize);
       m_list.addElement(newVal);
 
     }
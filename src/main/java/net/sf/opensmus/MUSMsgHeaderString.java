@@ -42,13 +42,15 @@ import java.io.UnsupportedEncodingException;
 public class MUSMsgHeaderString {
 
   private byte[] m_string;
+  private String m_decoded; // Cached toString(), null until first needed
 
   /**
    * Constructs a MUSMsgHeaderString from a Java String.
    */
   public MUSMsgHeaderString(String initString) {
 
-    m_string = initString.getBytes();
+    m_string = ConversionUtils.encodeString(initString);
+    m_decoded = initString;
   }
 
 
@@ -57,7 +59,8 @@ public class MUSMsgHeaderString {
    */
   public MUSMsgHeaderString() {
 
-    m_string = "".getBytes();
+    m_string = new byte[0];
+    m_decoded = "";
   }
 
 
@@ -70,34 +73,115 @@ public class MUSMsgHeaderString {
   }
 
 
+  /**
+   * Constructs a MUSMsgHeaderString holding the given encoded bytes.
+   */
+  private MUSMsgHeaderString(byte[] bytes) {
+
+    m_string = bytes;
+  }
+
+
   /**
    * Reserved for internal use of OpenSMUS.
    */
   public void extractMUSMsgHeaderString(ByteBuf buffer) {
 
+    int strSize = readSize(buffer);
+
+    m_string = new byte[strSize];
+    m_decoded = null;
+
+    buffer.readBytes(m_string, 0, strSize);
+
+    if ((strSize % 2) != 0) buffer.skipBytes(1); // Consume one more byte
+  }
+
+
+  /**
+   * Reads a MUSMsgHeaderString from a buffer. If previous holds the same string it is returned
+   * instead of a new object, e.g. for the subject of the last message read into a recycled message.
+   * Objects returned by this method are never changed afterwards, so they can be shared by any number of messages.
+   * Reserved for internal use of OpenSMUS.
+   */
+  static MUSMsgHeaderString read(ByteBuf buffer, MUSMsgHeaderString previous) {
+
+    int strSize = readSize(buffer);
+
+    MUSMsgHeaderString str = previous;
+    if (str == null || !str.hasBytes(buffer, strSize)) {
+      str = new MUSMsgHeaderString(new byte[strSize]);
+      buffer.getBytes(buffer.readerIndex(), str.m_string);
+    }
+
+    buffer.skipBytes(strSize);
+    if ((strSize % 2) != 0) buffer.skipBytes(1); // Consume one more byte
+    return str;
+  }
+
+
+  /**
+   * Skips a MUSMsgHeaderString in a buffer, e.g. the sender of a received message which is always replaced.
+   * Reserved for internal use of OpenSMUS.
+   */
+  static void skip(ByteBuf buffer) {
+
+    int strSize = readSize(buffer);
+
+    buffer.skipBytes(strSize);
+    if ((strSize % 2) != 0) buffer.skipBytes(1); // Consume one more byte
+  }
+
+
+  private static int readSize(ByteBuf buffer) {
+
     int strSize = buffer.readInt();
 
     // Sanity check
     if (strSize < 0 || strSize > buffer.readableBytes()) {
       MUSLog.Log("MUSMsgHeaderString size error : " + strSize + " " + buffer.readableBytes() + " " + ByteBufUtil.hexDump(buffer), MUSLog.kDeb);
-      throw new NullPointerException("MUSMsgHeaderString size error " + strSize + " " + buffer.readableBytes());
+      throw new LValueDecodeException("MUSMsgHeaderString size error " + strSize + " " + buffer.readableBytes());
     }
+    return strSize;
+  }
 
-    m_string = new byte[strSize];
 
-    buffer.readBytes(m_string, 0, strSize);
+  // True if the next length bytes in the buffer are the same as this string
+  private boolean hasBytes(ByteBuf buffer, int length) {
 
-    if ((strSize % 2) != 0) buffer.skipBytes(1); // Consume one more byte
+    if (m_string.length != length) return false;
+
+    int index = buffer.readerIndex();
+    for (int n = 0; n < length; n++) {
+      if (buffer.getByte(index + n) != m_string[n]) return false;
+    }
+    return true;
+  }
+
+
+  /**
+   * Returns the encoded string without the size prefix. The array is not copied and must not be changed.
+   * Reserved for internal use of OpenSMUS.
+   */
+  byte[] rawBytes() {
+
+    return m_string;
   }
 
 
   /**
    * Returns this MUSMsgHeaderString as a Java String.
+   * The string is decoded with the MessageCharset of the server on first use, and cached.
    */
   @Override
   public String toString() {
 
-    return new String(m_string);
+    String decoded = m_decoded;
+    if (decoded == null) {
+      decoded = ConversionUtils.decodeString(m_string);
+      m_decoded = decoded;
+    }
+    return decoded;
   }
 
 
@@ -106,7 +190,7 @@ public class MUSMsgHeaderString {
    */
   public void dump() {
 
-    MUSLog.Log("String> " + new String(m_string), MUSLog.kDeb);
+    MUSLog.Log("String> " + this, MUSLog.kDeb);
   }
 
 
@@ -131,4 +215,25 @@ public class MUSMsgHeaderString {
     return finalbytes;
   }
 
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  public int encodedSize() {
+
+    return 4 + m_string.length + (m_string.length % 2);
+  }
+
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void writeTo(ByteBuf buffer) {
+
+    buffer.writeInt(m_string.length);
+    buffer.writeBytes(m_string);
+
+    if ((m_string.length % 2) != 0) buffer.writeByte(0);
+  }
+
 }
@@ -34,25 +34,26 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.List;
 
 /**
- * Class representing a list of MUSMsgHeaderString objects, stored as a Java Vector.
+ * Class representing a list of MUSMsgHeaderString objects, stored as a Java ArrayList.
  */
 public class MUSMsgHeaderStringList {
 
   /**
-   * Public vector element storing the MUSMsgHeaderString members.
+   * Public list storing the MUSMsgHeaderString members.
    * It is safe to access the elements directly.
    */
-  public final Vector<MUSMsgHeaderString> m_stringlist;
+  public final List<MUSMsgHeaderString> m_stringlist;
 
   /**
    * Default Constructor
    */
   public MUSMsgHeaderStringList() {
-    m_stringlist = new Vector<>();
+    m_stringlist = new ArrayList<>();
   }
 
   /**
@@ -61,14 +62,14 @@ public class MUSMsgHeaderStringList {
    * @param elem MUSMsgHeaderString to add
    */
   public void addElement(MUSMsgHeaderString elem) {
-    m_stringlist.addElement(elem);
+    m_stringlist.add(elem);
   }
 
   /**
    * Retrieves an Enumeration object containing the MUSMsgHeaderString elements.
    */
   public Enumeration<MUSMsgHeaderString> elements() {
-    return m_stringlist.elements();
+    return Collections.enumeration(m_stringlist);
   }
 
   /**
@@ -77,9 +78,8 @@ public class MUSMsgHeaderStringList {
   public ArrayList<String> getAllRecipients() {
 
     ArrayList<String> recep = new ArrayList<>(m_stringlist.size());
-    Enumeration<MUSMsgHeaderString> r = m_stringlist.elements();
-    while (r.hasMoreElements()) {
-      recep.add(r.nextElement().toString());
+    for (MUSMsgHeaderString r : m_stringlist) {
+      recep.add(r.toString());
     }
     return recep; // m_stringlist.toArray(new MUSMsgHeaderString[0]);
   }
@@ -103,12 +103,33 @@ public class MUSMsgHeaderStringList {
    */
   public void extractMUSMsgHeaderStringList(ByteBuf buffer) {
 
-    int numStrings = buffer.readInt();
+    int numStrings = LValueCodec.readCount(buffer, 4); // Every string has a length
     MUSMsgHeaderString tempStr;
     for (int a = 0; a < numStrings; a++) {
       tempStr = new MUSMsgHeaderString();
       tempStr.extractMUSMsgHeaderString(buffer);
-      m_stringlist.addElement(tempStr);
+      m_stringlist.add(tempStr);
+    }
+  }
+
+
+  /**
+   * Reads the list like extractMUSMsgHeaderStringList(), replacing the current elements.
+   * An element that holds the same string as the one read at its position is kept instead of being read again.
+   * Reserved for internal use of OpenSMUS.
+   */
+  void readReplacing(ByteBuf buffer) {
+
+    int numStrings = LValueCodec.readCount(buffer, 4); // Every string has a length
+    int kept = Math.min(numStrings, m_stringlist.size());
+    for (int a = 0; a < kept; a++) {
+      m_stringlist.set(a, MUSMsgHeaderString.read(buffer, m_stringlist.get(a)));
+    }
+    for (int a = m_stringlist.size() - 1; a >= numStrings; a--) {
+      m_stringlist.remove(a);
+    }
+    for (int a = kept; a < numStrings; a++) {
+      m_stringlist.add(MUSMsgHeaderString.read(buffer, null));
     }
   }
 
@@ -161,4 +182,27 @@ public class MUSMsgHeaderStringList {
     }
   }
 
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  public int encodedSize() {
+
+    int size = 4;
+    for (MUSMsgHeaderString elem : m_stringlist) {
+      size += elem.encodedSize();
+    }
+    return size;
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void writeTo(ByteBuf buffer) {
+
+    buffer.writeInt(m_stringlist.size());
+    for (MUSMsgHeaderString elem : m_stringlist) {
+      elem.writeTo(buffer);
+    }
+  }
+
 }
@@ -0,0 +1,140 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+
+package net.sf.opensmus;
+
+import java.util.Arrays;
+
+/**
+ * The recipients a connection sent messages to most recently, with the targets they were resolved to.
+ * <BR>Clients usually send to the same few users and groups over and over, so MUSMovie.handleMsg() looks the raw
+ * recipient header up here before parsing it and searching the user, group and movie maps.
+ * Every route carries the routing generation of the server it was resolved in. Removing a user, group or movie
+ * starts a new generation, which makes all older routes invalid.
+ */
+final class MUSRecipientCache {
+
+  private static final int SIZE = 8;
+
+  /**
+   * A recipient resolved to one movie, linked to the next movie for recipients such as "@AllUsers@AllMovies".
+   * At most one of m_recpt, m_group and m_user is set, none if the recipient doesn't exist in m_movie.
+   */
+  static final class Route {
+
+    final int m_generation;
+    final MUSMovie m_movie;
+    final MUSMsgHeaderString m_sender; // Sender to use in m_movie, null to keep the sender of the message
+    final String m_recpt; // System command
+    final MUSGroup m_group;
+    final ServerUser m_user;
+    final MUSMsgHeaderString m_userHeader; // Name of m_user as the recipient of forwarded copies
+    Route m_next;
+
+    Route(int generation, MUSMovie movie, MUSMsgHeaderString sender, String recpt, MUSGroup group, ServerUser user, MUSMsgHeaderString userHeader) {
+      m_generation = generation;
+      m_movie = movie;
+      m_sender = sender;
+      m_recpt = recpt;
+      m_group = group;
+      m_user = user;
+      m_userHeader = userHeader;
+    }
+
+    // True if every movie of the route has a target. Routes to users or groups that don't exist are not cached,
+    // since they are only invalidated by removals.
+    boolean isComplete() {
+      for (Route route = this; route != null; route = route.m_next) {
+        if (route.m_recpt == null && route.m_group == null && route.m_user == null) return false;
+      }
+      return true;
+    }
+  }
+
+  // Most recently used first
+  private final byte[][] m_keys = new byte[SIZE][];
+  private final Route[] m_routes = new Route[SIZE];
+  private MUSMovie m_origin; // Movie of the sender the routes were resolved for
+
+  /**
+   * Returns the route of a recipient sent from a movie, or null if it is not cached or was resolved in an older generation.
+   */
+  synchronized Route get(MUSMsgHeaderString recpt, MUSMovie origin, int generation) {
+
+    if (origin != m_origin) { // The user changed movies
+      Arrays.fill(m_keys, null);
+      Arrays.fill(m_routes, null);
+      m_origin = origin;
+      return null;
+    }
+
+    byte[] key = recpt.rawBytes();
+    for (int n = 0; n < SIZE && m_keys[n] != null; n++) {
+      if (m_keys[n] == key || Arrays.equals(m_keys[n], key)) {
+        Route route = m_routes[n];
+        if (route.m_generation != generation) {
+          remove(n);
+          return null;
+        }
+        moveToFront(n, m_keys[n], route);
+        return route;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the route of a recipient, replacing the least recently used one if the cache is full.
+   * The route must have been resolved for the movie last passed to get().
+   */
+  synchronized void put(MUSMsgHeaderString recpt, Route route) {
+
+    byte[] key = recpt.rawBytes();
+    int n = 0;
+    while (n < SIZE - 1 && m_keys[n] != null && !Arrays.equals(m_keys[n], key)) {
+      n++;
+    }
+    moveToFront(n, key, route);
+  }
+
+  private void moveToFront(int n, byte[] key, Route route) {
+    System.arraycopy(m_keys, 0, m_keys, 1, n);
+    System.arraycopy(m_routes, 0, m_routes, 1, n);
+    m_keys[0] = key;
+    m_routes[0] = route;
+  }
+
+  private void remove(int n) {
+    System.arraycopy(m_keys, n + 1, m_keys, n, SIZE - n - 1);
+    System.arraycopy(m_routes, n + 1, m_routes, n, SIZE - n - 1);
+    m_keys[SIZE - 1] = null;
+    m_routes[SIZE - 1] = null;
+  }
+}
@@ -604,7 +604,7 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
               break;
 
             default:
-              cl.addElement(new LVoid());
+              cl.addElement(LVoid.VOID);
               break;
           }
         }
@@ -655,7 +655,7 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
     if (msgcont.getType() != LValue.vt_PropList) {
       // Error, we need a proplist
       reply.m_errCode = MUSErrorCode.BadParameter;
-      reply.m_msgContent = new LInteger(0);
+      reply.m_msgContent = LInteger.valueOf(0);
       user.sendMessage(reply);
       return;
     }
@@ -668,18 +668,18 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
           LValue argpasswd;
           LValue arguserlevel;
           try {
-            arguserid = plist.getElement(new LSymbol("userID"));
-            argpasswd = plist.getElement(new LSymbol("password"));
+            arguserid = plist.getElement(LSymbol.intern("userID"));
+            argpasswd = plist.getElement(LSymbol.intern("password"));
           } catch (PropertyNotFoundException pnf) {
             // userid and password are needed
             throw new MUSErrorCode(MUSErrorCode.BadParameter);
           }
 
           try {
-            arguserlevel = plist.getElement(new LSymbol("userlevel"));
+            arguserlevel = plist.getElement(LSymbol.intern("userlevel"));
           } catch (PropertyNotFoundException pnf) {
             // userlevel is optional
-            arguserlevel = new LInteger(mov.properties.getIntProperty("DefaultUserLevel"));
+            arguserlevel = LInteger.valueOf(mov.properties.getIntProperty("DefaultUserLevel"));
           }
 
           // Check types for arguments
@@ -706,12 +706,12 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
 
           if (usercreated) {
             LPropList pl = new LPropList();
-            pl.addElement(new LSymbol("userID"), arguserid);
+            pl.addElement(LSymbol.intern("userID"), arguserid);
             reply.m_msgContent = pl;
           } else {
             reply.m_errCode = MUSErrorCode.DatabaseDataRecordNotUnique;
             LPropList pl = new LPropList();
-            pl.addElement(new LSymbol("userID"), arguserid);
+            pl.addElement(LSymbol.intern("userID"), arguserid);
             reply.m_msgContent = pl;
           }
 
@@ -720,7 +720,7 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
         } else if (args[2].equalsIgnoreCase("deleteUser")) {
           LValue arguserid;
           try {
-            arguserid = plist.getElement(new LSymbol("userID"));
+            arguserid = plist.getElement(LSymbol.intern("userID"));
           } catch (PropertyNotFoundException pnf) {
             // userid is needed
             throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -750,13 +750,13 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
 
             if (userdeleted) {
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("userID"), arguseridstr);
+              pl.addElement(LSymbol.intern("userID"), arguseridstr);
               reply.m_msgContent = pl;
               user.sendMessage(reply);
             } else {
               reply.m_errCode = MUSErrorCode.DatabaseError;
               LPropList pl = new LPropList();
-              pl.addElement(new LSymbol("userID"), arguseridstr);
+              pl.addElement(LSymbol.intern("userID"), arguseridstr);
               reply.m_msgContent = pl;
               user.sendMessage(reply);
             }
@@ -768,10 +768,10 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
           LValue argpasswd;
 
           try {
-            arguserid = plist.getElement(new LSymbol("userID"));
-            argpasswd = plist.getElement(new LSymbol("password"));
-            argsqldriver = plist.getElement(new LSymbol("driver"));
-            argsqlurl = plist.getElement(new LSymbol("url"));
+            arguserid = plist.getElement(LSymbol.intern("userID"));
+            argpasswd = plist.getElement(LSymbol.intern("password"));
+            argsqldriver = plist.getElement(LSymbol.intern("driver"));
+            argsqlurl = plist.getElement(LSymbol.intern("url"));
           } catch (PropertyNotFoundException pnf) {
             //userid and password are needed
             throw new MUSErrorCode(MUSErrorCode.BadParameter);
@@ -800,14 +800,14 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
           LValue argentry;
           LValue argparams;
           try {
-            argentry = plist.getElement(new LSymbol("sql"));
+            argentry = plist.getElement(LSymbol.intern("sql"));
           } catch (PropertyNotFoundException pnf) {
             // Entry ais needed
             throw new MUSErrorCode(MUSErrorCode.BadParameter);
           }
 
           try {
-            argparams = plist.getElement(new LSymbol("values"));
+            argparams = plist.getElement(LSymbol.intern("values"));
           } catch (PropertyNotFoundException pnf) {
             // userlevel is optional
             argparams = new LList();
@@ -847,14 +847,14 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
           LValue argentry;
           LValue argparams;
           try {
-            argentry = plist.getElement(new LSymbol("sql"));
+            argentry = plist.getElement(LSymbol.intern("sql"));
           } catch (PropertyNotFoundException pnf) {
             // Entry ais needed
             throw new MUSErrorCode(MUSErrorCode.BadParameter);
           }
 
           try {
-            argparams = plist.getElement(new LSymbol("values"));
+            argparams = plist.getElement(LSymbol.intern("values"));
           } catch (PropertyNotFoundException pnf) {
             // userlevel is optional
             argparams = new LList();
@@ -891,7 +891,7 @@ public class MUSSQLConnection implements ServerUserDatabase, SQLGateway {
       } catch (MUSErrorCode err) {
         reply.m_errCode = err.m_errCode;
 
-        reply.m_msgContent = new LInteger(0);
+        reply.m_msgContent = LInteger.valueOf(0);
         user.sendMessage(reply);
       }
     } // End SQL commands
@@ -31,6 +31,13 @@ package net.sf.opensmus;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 //import io.netty.channel.socket.DatagramChannelFactory;
 //import io.netty.channel.socket.nio.NioDatagramChannelFactory;
 import io.netty.channel.group.ChannelGroup;
@@ -44,6 +51,7 @@ import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
@@ -53,6 +61,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 //import java.util.concurrent.Executors;
 
 import net.sf.opensmus.io.SMUSPipelineFactory;
@@ -78,6 +89,8 @@ public class MUSServer implements ServerObject {
   public MUSSQLConnection m_sqlConn;
   public MUSServerProperties m_props;
   public MUSScriptMap m_scriptmap;
+  public MUSSlowConsumerPolicy m_slowConsumerPolicy;
+  public MUSMessageExecutor m_messageExecutor; // null when messages are handled on the network threads
   public long m_starttime;
   public volatile int idle = 600;
   public int m_maxconnections = 0;
@@ -88,6 +101,14 @@ public class MUSServer implements ServerObject {
    */
   public volatile boolean m_alive = true;
   public String encryptionKey;
+  boolean m_allEncrypted = false; // EncryptionKey starts with #All
+  boolean m_directBuffers = true;
+  boolean m_lazyContent = true;
+  int m_largeContentThreshold = 0; // 0 = large content is copied like any other
+  long m_maxUserLargeContent = 0;
+  long m_maxTotalLargeContent = 0;
+  final AtomicLong m_largeContentBytes = new AtomicLong();
+  private final AtomicInteger m_routingGeneration = new AtomicInteger(); // See MUSRecipientCache
   public int authentication; // Valid states defined in ServerUserDatabase
   public int m_udpStartingPort = 1627;
   public String m_udpAddress = "default";
@@ -97,12 +118,18 @@ public class MUSServer implements ServerObject {
   public long in_msg = 0;
   public long out_msg = 0;
   public long drop_msg = 0;
+  public long write_count = 0;
+  public long flush_count = 0;
   protected MUSServerLoginQueue m_loginqueue;
   protected boolean m_enabled = true;
   protected final Vector<Integer> m_udpPortsInUse = new Vector<>();
   //DatagramChannelFactory UDPFactory;
   //ConnectionlessBootstrap UDPBootstrap;
   ServerBootstrap UDPBootstrap;
+  // Event loops shared by all connection ports
+  EventLoopGroup m_bossGroup;
+  EventLoopGroup m_workerGroup;
+  Class<? extends ServerChannel> m_serverChannelClass;
   private MUSIdleCheck m_bgtask;
   private MUSServerStatusLogger m_slogger;
 
@@ -161,6 +188,11 @@ public class MUSServer implements ServerObject {
 
     idle = m_props.getIntProperty("IdleTimeOut");
 
+    m_slowConsumerPolicy = new MUSSlowConsumerPolicy(m_props);
+
+    if (m_props.getIntProperty("ThreadPoolSize") > 0)
+      m_messageExecutor = new MUSMessageExecutor(m_props);
+
     String auth = m_props.getProperty("Authentication");
     if (auth.equalsIgnoreCase("UserRecordRequired")) {
       authentication = AUTHENTICATION_REQUIRED;
@@ -171,7 +203,23 @@ public class MUSServer implements ServerObject {
     }
 
     encryptionKey = m_props.getProperty("EncryptionKey");
-    MUSBlowfishCypher.initGlobalBoxes(encryptionKey);
+    MUSBlowfishCypher.initGlobalBoxes(encryptionKey, m_props.getIntProperty("EncryptionKeystreamSize"));
+    m_allEncrypted = encryptionKey.startsWith("#All");
+    m_directBuffers = m_props.getIntProperty("UseDirectBuffers") == 1;
+    m_lazyContent = m_props.getIntProperty("LazyContentDecoding") == 1;
+    LValueCodec.setLimits(m_props.getIntProperty("MaxContentDepth"), m_props.getIntProperty("MaxContentValues"));
+    m_largeContentThreshold = m_props.getIntProperty("LargeContentThreshold");
+    m_maxUserLargeContent = m_props.getIntProperty("MaxUserLargeContentSize");
+    m_maxTotalLargeContent = m_props.getIntProperty("MaxTotalLargeContentSize");
+
+    String charsetName = m_props.getProperty("MessageCharset");
+    if (!charsetName.equalsIgnoreCase("default")) {
+      try {
+        ConversionUtils.setMessageCharset(Charset.forName(charsetName));
+      } catch (IllegalArgumentException e) {
+        MUSLog.Log("Unsupported MessageCharset " + charsetName + ", using the platform default", MUSLog.kSys);
+      }
+    }
 
     boolean dbenabled = m_props.getIntProperty("EnableDatabaseCommands") == 1;
 
@@ -192,6 +240,8 @@ public class MUSServer implements ServerObject {
 
     m_starttime = System.currentTimeMillis();
 
+    this.installEventLoops();
+
     initConnectionPorts();
 
     if (m_props.getIntProperty("EnableUDP") == 1) {
@@ -264,6 +314,11 @@ public class MUSServer implements ServerObject {
 
     disconnectAllUsers();
 
+    if (m_messageExecutor != null)
+      m_messageExecutor.shutdown(m_props.getIntProperty("ShutdownGracePeriod"));
+
+    this.deinstallEventLoops();
+
     m_alive = false;
 
     MUSLog.Log("Server Stopped", MUSLog.kSys);
@@ -413,6 +468,36 @@ public class MUSServer implements ServerObject {
     drop_msg++;
   }
 
+  public void logWrite() {
+    write_count++;
+  }
+
+  public void logFlush() {
+    flush_count++;
+  }
+
+  // Large undecoded message content is kept in the receive buffers, up to a per user and a total limit.
+  // Content over the limits is copied to the heap like smaller content.
+  boolean reserveLargeContent(MUSUser user, int size) {
+
+    if (m_largeContentThreshold <= 0 || size < m_largeContentThreshold)
+      return false;
+
+    long userBytes = user.m_largeContentBytes.addAndGet(size);
+    long totalBytes = m_largeContentBytes.addAndGet(size);
+    if ((m_maxUserLargeContent > 0 && userBytes > m_maxUserLargeContent)
+            || (m_maxTotalLargeContent > 0 && totalBytes > m_maxTotalLargeContent)) {
+      releaseLargeContent(user, size);
+      return false;
+    }
+    return true;
+  }
+
+  void releaseLargeContent(MUSUser user, int size) {
+    user.m_largeContentBytes.addAndGet(-size);
+    m_largeContentBytes.addAndGet(-size);
+  }
+
   public void addConnectionPort(MUSConnectionPort onePort) {
     m_ports.addElement(onePort);
   }
@@ -857,6 +942,7 @@ public class MUSServer implements ServerObject {
 
     String gkey = onemovie.name.toUpperCase();
     m_movielist.putIfAbsent(gkey, onemovie);
+    invalidateRoutes(); // Recipients in @AllMovies
   }
 
   public void removeMovie(MUSMovie onemovie) {
@@ -868,22 +954,39 @@ public class MUSServer implements ServerObject {
 
     String gkey = onemovie.name.toUpperCase();
     m_movielist.remove(gkey);
+    invalidateRoutes();
 
     MUSLog.Log("Movie removed:" + onemovie.name(), MUSLog.kMov);
   }
 
+  /**
+   * Returns the current routing generation. Recipients resolved in an older generation must be resolved again.
+   * Reserved for internal use of OpenSMUS.
+   */
+  int routingGeneration() {
+    return m_routingGeneration.get();
+  }
+
+  /**
+   * Starts a new routing generation, after a user, group or movie a message could be routed to has been removed.
+   * Reserved for internal use of OpenSMUS.
+   */
+  void invalidateRoutes() {
+    m_routingGeneration.incrementAndGet();
+  }
+
   public LValue srvcmd_getVersion() {
 
     LPropList pl = new LPropList();
-    pl.addElement(new LSymbol("vendor"), new LString(m_vendorname));
-    pl.addElement(new LSymbol("version"), new LString(m_version));
+    pl.addElement(LSymbol.intern("vendor"), new LString(m_vendorname));
+    pl.addElement(LSymbol.intern("version"), new LString(m_version));
     String sysname = System.getProperty("os.name");
-    pl.addElement(new LSymbol("platform"), new LString(sysname));
+    pl.addElement(LSymbol.intern("platform"), new LString(sysname));
     return pl;
   }
 
   public LValue srvcmd_getUserCount() {
-    return new LInteger(m_clientlist.size());
+    return LInteger.valueOf(m_clientlist.size());
   }
 
   public LValue srvcmd_getMovies() {
@@ -1018,6 +1121,44 @@ public class MUSServer implements ServerObject {
     this.m_slogger = logger;
   }
 
+  /**
+   * Creates the boss and worker event loops shared by all connection ports.
+   * Sizes are configured in 'BossThreads' and 'WorkerThreads', the transport in 'NetworkTransport'
+   */
+  private void installEventLoops() {
+
+    int bossThreads = Math.max(1, m_props.getIntProperty("BossThreads"));
+    int workerThreads = Math.max(0, m_props.getIntProperty("WorkerThreads")); // 0 lets Netty use twice the number of cores
+
+    if (m_props.getProperty("NetworkTransport").equalsIgnoreCase("epoll")) {
+      if (Epoll.isAvailable()) {
+        m_bossGroup = new EpollEventLoopGroup(bossThreads);
+        m_workerGroup = new EpollEventLoopGroup(workerThreads);
+        m_serverChannelClass = EpollServerSocketChannel.class;
+        MUSLog.Log("Using native epoll transport", MUSLog.kSys);
+        return;
+      }
+
+      MUSLog.Log("Native epoll transport not available, using NIO: " + Epoll.unavailabilityCause(), MUSLog.kSys);
+    }
+
+    m_bossGroup = new NioEventLoopGroup(bossThreads);
+    m_workerGroup = new NioEventLoopGroup(workerThreads);
+    m_serverChannelClass = NioServerSocketChannel.class;
+  }
+
+  /**
+   * Shuts down the shared event loops, letting queued writes and tasks finish first
+   */
+  private void deinstallEventLoops() {
+
+    if (m_bossGroup != null)
+      m_bossGroup.shutdownGracefully();
+
+    if (m_workerGroup != null)
+      m_workerGroup.shutdownGracefully().awaitUninterruptibly(m_props.getIntProperty("ShutdownGracePeriod"), TimeUnit.SECONDS);
+  }
+
   private void installIdleChecker() {
 
     MUSIdleCheck checkThread = new MUSIdleCheck(this);
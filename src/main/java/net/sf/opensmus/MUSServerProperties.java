@@ -154,8 +154,28 @@ public class MUSServerProperties {
     m_props.put("MaxUDPPacket", "1024");
     m_props.put("tcpNoDelay", "1");
     m_props.put("soLingerTime", "-1");
+    m_props.put("NetworkTransport", "nio");
+    m_props.put("BossThreads", "1");
+    m_props.put("WorkerThreads", "0");
+    m_props.put("ShutdownGracePeriod", "15");
+    m_props.put("WriteBufferLowWaterMark", "32768");
+    m_props.put("WriteBufferHighWaterMark", "65536");
+    m_props.put("LowPrioritySubjects", "none");
+    m_props.put("SlowConsumerGracePeriod", "30");
+    m_props.put("SlowConsumerMaxBufferSize", "4194304");
+    m_props.put("UseDirectBuffers", "1");
+    m_props.put("LazyContentDecoding", "1");
+    m_props.put("MessageCharset", "default");
+    m_props.put("MaxContentDepth", "64");
+    m_props.put("MaxContentValues", "65536");
+    m_props.put("LargeContentThreshold", "65536");
+    m_props.put("MaxUserLargeContentSize", "8388608");
+    m_props.put("MaxTotalLargeContentSize", "268435456");
+    m_props.put("MaxFlushBatchSize", "64");
+    m_props.put("MaxFlushLatency", "0");
     m_props.put("ConnectionLimit", "1000");
     m_props.put("EncryptionKey", "IPAddress resolution");
+    m_props.put("EncryptionKeystreamSize", "16384");
     m_props.put("LogFileName", DEFAULT_LOGFILENAME);
     m_props.put("ClearLogAtStartup", "1");
     m_props.put("ServerOutputToLogFile", "1");
@@ -179,6 +199,8 @@ public class MUSServerProperties {
     m_props.put("dumpLoginMessage", "0");
 
     m_props.put("ThreadPoolSize", "16");
+    m_props.put("ThreadPoolOrdering", "User");
+    m_props.put("ThreadPoolVirtualThreads", "0");
     m_props.put("MaxUserMemorySize", "0");
     m_props.put("MaxTotalMemorySize", "0");
 
@@ -70,6 +70,7 @@ public final class MUSServerStatusLogger extends Thread {
         this.logServerStatus(">Server state at " + server.timeString() + " \n  " + server.m_clientlist.size() + " users connected");
         this.logServerStatus(" >Traffic since last state report: \n  in - " + server.in_bytes + " bytes\n  out - " + server.out_bytes + " bytes");
         this.logServerStatus(" >Messages since last state report: \n  in - " + server.in_msg + " msgs\n  out - " + server.out_msg + " msgs\n  discarded - " + server.drop_msg + " msgs");
+        this.logServerStatus(" >Socket writes since last state report: \n  writes - " + server.write_count + "\n  flushes - " + server.flush_count + "\n  flush/write ratio - " + flushWriteRatio());
 
         // Clear the traffic statistics of the server
         this.resetServerTrafficStatistics();
@@ -92,6 +93,13 @@ public final class MUSServerStatusLogger extends Thread {
     MUSLog.Log(logMessage, logLevel);
   }
 
+  private String flushWriteRatio() {
+    if (server.write_count == 0)
+      return "n/a";
+
+    return String.format("%.3f", (double) server.flush_count / server.write_count);
+  }
+
   private void resetServerTrafficStatistics() {
 
     server.in_bytes = 0;
@@ -99,5 +107,7 @@ public final class MUSServerStatusLogger extends Thread {
     server.in_msg = 0;
     server.out_msg = 0;
     server.drop_msg = 0;
+    server.write_count = 0;
+    server.flush_count = 0;
   }
 }
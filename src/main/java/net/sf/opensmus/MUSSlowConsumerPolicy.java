@@ -0,0 +1,95 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package net.sf.opensmus;
+
+import io.netty.channel.Channel;
+import java.util.HashSet;
+
+/**
+ * Decides what happens to outgoing messages for users whose connection can not keep up.
+ * <p>
+ * A channel becomes unwritable once more than WriteBufferHighWaterMark bytes are waiting to be sent.
+ * While a user's channel is unwritable, messages flagged as UDP are dropped first,
+ * then messages with a subject listed in LowPrioritySubjects.
+ * A user that stays unwritable for SlowConsumerGracePeriod seconds, or that has more than
+ * SlowConsumerMaxBufferSize bytes waiting, is disconnected.
+ */
+public class MUSSlowConsumerPolicy {
+
+  private final HashSet<String> m_lowPrioritySubjects = new HashSet<>();
+  private final long m_gracePeriod; // ms, 0 = never disconnect
+  private final long m_maxBufferSize; // bytes, 0 = no limit
+
+  public MUSSlowConsumerPolicy(MUSServerProperties props) {
+
+    String[] subjects = props.getStringListProperty("LowPrioritySubjects");
+    if (subjects != null) {
+      for (String sub : subjects) {
+        if (!sub.equalsIgnoreCase("none"))
+          m_lowPrioritySubjects.add(sub);
+      }
+    }
+
+    m_gracePeriod = Math.max(0, props.getIntProperty("SlowConsumerGracePeriod")) * 1000L;
+    m_maxBufferSize = Math.max(0, props.getIntProperty("SlowConsumerMaxBufferSize"));
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   * Returns false if the message should not be written to the user's channel.
+   */
+  public boolean admit(MUSUser user, Channel channel, MUSMessage msg) {
+
+    if (channel.isWritable()) {
+      if (user.m_unwritableSince != 0) user.m_unwritableSince = 0;
+      return true;
+    }
+
+    if (user.m_scheduledToDie)
+      return false;
+
+    long now = System.currentTimeMillis();
+    if (user.m_unwritableSince == 0) user.m_unwritableSince = now;
+
+    // Bytes still waiting to be written once the channel is writable again, on top of the low watermark
+    long pending = channel.bytesBeforeWritable();
+
+    if ((m_gracePeriod > 0 && now - user.m_unwritableSince > m_gracePeriod) || (m_maxBufferSize > 0 && pending > m_maxBufferSize)) {
+      MUSLog.Log("User " + user + " disconnected: connection too slow, " + pending + " bytes waiting", MUSLog.kUsr);
+      user.deleteUser();
+      return false;
+    }
+
+    if (msg.m_udp)
+      return false; // UDP messages are allowed to get lost anyway
+
+    return m_lowPrioritySubjects.isEmpty() || !m_lowPrioritySubjects.contains(msg.m_subject.toString());
+  }
+}
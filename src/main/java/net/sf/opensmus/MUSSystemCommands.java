@@ -0,0 +1,176 @@
+/*
+  Part of OpenSMUS Source Code.
+  OpenSMUS is licensed under a MIT License, compatible with both
+  open source (GPL or not) and commercial development.
+
+  Copyright (c) 2001-2008 Mauricio Piacentini <mauricio@tabuleiro.com>
+
+  Permission is hereby granted, free of charge, to any person
+  obtaining a copy of this software and associated documentation
+  files (the "Software"), to deal in the Software without
+  restriction, including without limitation the rights to use,
+  copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the
+  Software is furnished to do so, subject to the following
+  conditions:
+
+  The above copyright notice and this permission notice shall be
+  included in all copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+  OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+
+package net.sf.opensmus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * The system commands of a movie: the handler and required user level of every "system.x.y" recipient.
+ * <BR>The table is built when the movie is created, so dispatching a command is a single hash lookup.
+ * Recipients are matched ignoring case, without creating any strings.
+ * Categories whose commands are not all known in advance, like the database commands and system.script,
+ * also have a handler for the whole category, e.g. "System.DBAdmin".
+ * <BR>Registering a command replaces the table, lookups never lock.
+ */
+final class MUSSystemCommands {
+
+  /**
+   * A registered command or category.
+   */
+  static final class Command {
+
+    final String m_name;
+    final String[] m_args; // m_name split at the dots
+    final SystemCommand m_handler;
+    final Object m_owner; // The script that registered the command, null for built-in commands
+    volatile int m_level; // Required user level, -1 if there is no UserLevel property for the command
+
+    Command(String name, SystemCommand handler, Object owner, int level) {
+      m_name = name;
+      m_args = name.split("\\.");
+      m_handler = handler;
+      m_owner = owner;
+      m_level = level;
+    }
+
+    boolean isCategory() {
+      return m_args.length == 2;
+    }
+  }
+
+  private final List<Command> m_commands = new ArrayList<>();
+  private volatile Command[] m_table = new Command[1];
+
+  /**
+   * Adds a command such as "System.Group.join", or a category such as "System.DBAdmin".
+   * Replaces a command registered before with the same name.
+   */
+  synchronized void register(String name, SystemCommand handler, Object owner, int level) {
+    remove(name);
+    m_commands.add(new Command(name, handler, owner, level));
+    rebuild();
+  }
+
+  /**
+   * Removes a command or category.
+   */
+  synchronized void unregister(String name) {
+    if (remove(name)) rebuild();
+  }
+
+  /**
+   * Removes all commands registered by a script.
+   */
+  synchronized void unregisterAll(Object owner) {
+    if (m_commands.removeIf(c -> c.m_owner == owner)) rebuild();
+  }
+
+  /**
+   * Resolves the required user level of every command again, e.g. after the UserLevel properties changed.
+   */
+  synchronized void updateLevels(ToIntFunction<String> levels) {
+    for (Command command : m_commands) {
+      command.m_level = levels.applyAsInt(command.m_name);
+    }
+  }
+
+  /**
+   * Returns true if a command or category with this name is registered.
+   */
+  boolean contains(String name) {
+    return lookup(name, name.length()) != null;
+  }
+
+  /**
+   * Returns the command for a recipient, or the category of the recipient if the command itself is not registered.
+   * Returns null if neither is, or if the recipient is not in the form "system.x.y".
+   */
+  Command find(String recpt) {
+
+    Command command = lookup(recpt, recpt.length());
+    if (command != null)
+      return command.isCategory() ? null : command;
+
+    int dot = recpt.lastIndexOf('.');
+    if (dot < 0 || dot == recpt.length() - 1)
+      return null;
+
+    command = lookup(recpt, dot);
+    return (command != null && command.isCategory()) ? command : null;
+  }
+
+  // Finds the command named by the first length characters of s
+  private Command lookup(String s, int length) {
+
+    Command[] table = m_table;
+    int mask = table.length - 1;
+    for (int slot = hash(s, length) & mask; ; slot = (slot + 1) & mask) {
+      Command command = table[slot];
+      if (command == null)
+        return null;
+      if (command.m_name.length() == length && command.m_name.regionMatches(true, 0, s, 0, length))
+        return command;
+    }
+  }
+
+  private boolean remove(String name) {
+    return m_commands.removeIf(c -> c.m_name.equalsIgnoreCase(name));
+  }
+
+  // Open addressing with linear probing, at most half full
+  private void rebuild() {
+
+    int size = Integer.highestOneBit(Math.max(1, m_commands.size()) * 2) * 2;
+    Command[] table = new Command[size];
+    for (Command command : m_commands) {
+      int slot = hash(command.m_name, command.m_name.length()) & (size - 1);
+      while (table[slot] != null) {
+        slot = (slot + 1) & (size - 1);
+      }
+      table[slot] = command;
+    }
+    m_table = table;
+  }
+
+  // Hash of the first length characters of s, ignoring the case of ASCII letters
+  private static int hash(String s, int length) {
+
+    int h = 0;
+    for (int n = 0; n < length; n++) {
+      char c = s.charAt(n);
+      if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+      h = 31 * h + c;
+    }
+    return h ^ (h >>> 16);
+  }
+}
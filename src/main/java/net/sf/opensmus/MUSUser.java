@@ -40,6 +40,9 @@ import java.net.UnknownHostException;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import io.netty.util.ReferenceCountUtil;
+import net.sf.opensmus.io.FlushBatcher;
 import net.sf.opensmus.io.SMUSPipeline;
 
 /////////////////////////////////////////////////////////////
@@ -64,14 +67,20 @@ public class MUSUser implements ServerUser {
   public final int ip;
   // These are ServerUser properties
   public String m_name = "";
+  private volatile MUSMsgHeaderString m_nameHeader; // m_name as the sender of received messages
   public MUSMovie m_movie;
   public int m_userlevel = 0;
   // Netty
   final Channel channel;
+  final FlushBatcher m_writer;
   Channel udpchannel;
   MUSUDPListener m_udplistener;
   InetSocketAddress m_UDPSocketAddress; // Used by Netty to write outgoing messages
   boolean m_scheduledToDie = false;
+  volatile long m_unwritableSince = 0; // Used by MUSSlowConsumerPolicy
+  final AtomicLong m_queuedBytes = new AtomicLong(); // Used by MUSMessageExecutor
+  final AtomicLong m_largeContentBytes = new AtomicLong(); // Large message content from this user still held, see MUSLargeContent
+  final MUSRecipientCache m_recipientCache = new MUSRecipientCache(); // Used by MUSMovie.handleMsg
 //  private DatagramSocket m_udpsocket = null;
   private int m_udpportnumber = 0;
 //  private Thread m_timer;
@@ -84,6 +93,7 @@ public class MUSUser implements ServerUser {
 
     m_server = svr;
     channel = s;
+    m_writer = new FlushBatcher(svr, s);
     m_creationtime = m_server.timeStamp();
 
     ip = this.ipAsInteger();
@@ -426,15 +436,85 @@ public class MUSUser implements ServerUser {
     if (msg.m_udp && m_udpenabled) {
       MUSLog.Log("Writing outgoing UDP message : " + msg, MUSLog.kDeb);
       //udpchannel.write(msg, m_UDPSocketAddress); // m_udplistener.send(msg, m_userUDPAddress, m_userUDPPort);
-      udpchannel.write(msg); // m_udplistener.send(msg, m_userUDPAddress, m_userUDPPort);
+      udpchannel.writeAndFlush(msg.retain()); // m_udplistener.send(msg, m_userUDPAddress, m_userUDPPort);
     } else {
       // Netty
       // MUSLog.Log("Writing outgoing message to " + m_name + ": " + msg, MUSLog.kDeb);
-      channel.write(msg);
+      if (!m_server.m_slowConsumerPolicy.admit(this, channel, msg)) {
+        logDroppedMsg();
+        return;
+      }
+      // Writes are coalesced, the flush happens once per burst.
+      // The encoder releases the message, the caller keeps its own reference.
+      m_writer.write(msg.retain());
+    }
+  }
+
+  /**
+   * Returns true if msg is sent over the TCP channel and can be written as a buffer encoded for all recipients.
+   * Reserved for internal use of OpenSMUS.
+   */
+  boolean acceptsSharedEncoding(MUSMessage msg) {
+    return !(msg.m_udp && m_udpenabled);
+  }
+
+  /**
+   * Writes a message that has already been encoded (and possibly encrypted), e.g. once for all members of a group.
+   * Takes over the reference to the buffer.
+   * Reserved for internal use of OpenSMUS.
+   */
+  void sendEncoded(MUSMessage msg, Object encoded) {
+    if (!m_server.m_slowConsumerPolicy.admit(this, channel, msg)) {
+      ReferenceCountUtil.release(encoded);
+      logDroppedMsg();
+      return;
     }
+
+    m_writer.write(encoded);
+  }
+
+  /**
+   * Returns true if the content of messages received from this user should only be decoded when needed.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public boolean lazyContentDecoding() {
+    return m_server.m_lazyContent;
+  }
+
+  /**
+   * Returns true if content of the given size received from this user should be kept in its receive buffer,
+   * and reserves the size against the large content limits. Reserved for internal use of OpenSMUS.
+   */
+  boolean reserveLargeContent(int size) {
+    return m_server.reserveLargeContent(this, size);
+  }
+
+  void releaseLargeContent(int size) {
+    m_server.releaseLargeContent(this, size);
   }
 
   public void postMessage(MUSMessage msg) {
+    postMessage(msg, msg.encodedSize());
+  }
+
+  /**
+   * Posts a message received from this user, which took up size bytes on the wire.
+   * The message is handled on the message thread pool if there is one, otherwise right away.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public void postMessage(MUSMessage msg, int size) {
+
+    MUSMessageExecutor executor = m_server.m_messageExecutor;
+    if (executor != null)
+      executor.execute(this, msg, size);
+    else
+      dispatchMessage(msg);
+  }
+
+  /**
+   * Reserved for internal use of OpenSMUS.
+   */
+  void dispatchMessage(MUSMessage msg) {
 
     // Simple prevention of flooding with same packet, by timestamp
         /* if (m_enablefloodprevention) {
@@ -454,8 +534,12 @@ public class MUSUser implements ServerUser {
     // m_movie.m_dispatcher.queue(new MUSQueuedMessage(this, msg)); // Can cause nullpointer exception (Called from messageReceived(IOHandler.java:59)
     // Call handleMsg() directly instead since there's no queue anymore
     // m_movie can be null!
-    if (m_movie != null) {
-      m_movie.handleMsg(this, msg);
+    try {
+      if (m_movie != null) {
+        m_movie.handleMsg(this, msg);
+      }
+    } finally {
+      msg.release(); // Large received content is released once the message and its copies have been sent
     }
   }
 
@@ -463,6 +547,20 @@ public class MUSUser implements ServerUser {
     return m_name;
   }
 
+  /**
+   * Returns the name of this user as a message header string, e.g. for the sender of its messages.
+   * Reserved for internal use of OpenSMUS.
+   */
+  public MUSMsgHeaderString nameHeader() {
+    MUSMsgHeaderString header = m_nameHeader;
+    String name = m_name;
+    if (header == null || header.toString() != name) { // Created again when the user is renamed at logon
+      header = new MUSMsgHeaderString(name);
+      m_nameHeader = header;
+    }
+    return header;
+  }
+
   public String pathname() {
     return m_pathname;
   }
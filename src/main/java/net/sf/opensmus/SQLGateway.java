@@ -79,7 +79,7 @@ public interface SQLGateway {
    * <BR>Example:
    * <BR>LList params= new LList();
    * <BR>params.addElement(new LString("John"));
-   * <BR>params.addElement(new LInteger(25));
+   * <BR>params.addElement(LInteger.valueOf(25));
    * <BR>sqlgateway.executeUpdate("UPDATE USERS SET NAME=? WHERE USERID=?",params);
    *
    * @param sqlquery Prepared SQL query string.
@@ -96,7 +96,7 @@ public interface SQLGateway {
    * <BR>Example:
    * <BR>LList params= new LList();
    * <BR>params.addElement(new LString("John"));
-   * <BR>params.addElement(new LInteger(25));
+   * <BR>params.addElement(LInteger.valueOf(25));
    * <BR>LValue result = sqlgateway.executeQuery("SELECT LASTNAME, AGE FROM USERS WHERE FIRSTNAME=? AND AGE>?",params);
    *
    * @param sqlquery Prepared SQL query string.
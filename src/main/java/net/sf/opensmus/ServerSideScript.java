@@ -167,6 +167,28 @@ public class ServerSideScript implements ServerUser {
 
   }
 
+  /**
+   * Registers a handler for the system.script.<i>name</i> command in the movie associated with this script.
+   * <BR>Messages sent to a registered command are passed to the handler instead of the incomingMessage() method
+   * of every script. The UserLevel.System.Script.<i>name</i> property still sets the required user level.
+   * Commands are removed when the script is deleted.
+   *
+   * @param name    Name of the command, without the "system.script." prefix
+   * @param handler SystemCommand that processes the messages
+   */
+  public void registerCommand(String name, SystemCommand handler) {
+    ((MUSMovie) m_movie).registerCommand("System.Script." + name, handler, this);
+  }
+
+  /**
+   * Removes a command registered with registerCommand().
+   *
+   * @param name Name of the command, without the "system.script." prefix
+   */
+  public void unregisterCommand(String name) {
+    ((MUSMovie) m_movie).unregisterCommand("System.Script." + name);
+  }
+
 
   //ServerUser interface methods
 
@@ -177,6 +199,7 @@ public class ServerSideScript implements ServerUser {
    * @param msg Message to send
    */
   public void sendMessage(MUSMessage msg) {
+    msg = msg.detach(); // Scripts read m_msgContent directly, and may keep the message after it has been recycled
     ServerUser sender;
     try {
       sender = ((MUSMovie) m_movie).getUser(msg.m_senderID.toString());
@@ -14,8 +14,13 @@ import net.sf.opensmus.MUSBlowfish;
 public class DecryptionFramer extends ByteToMessageDecoder {
 
   int messageSize = 0;
+  final int maxMessageSize;
   final MUSBlowfish cipher = new MUSBlowfish();
 
+  public DecryptionFramer(int maxSize) {
+    maxMessageSize = maxSize;
+  }
+
   @Override
   protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
     if (messageSize == 0) {
@@ -47,6 +52,16 @@ public class DecryptionFramer extends ByteToMessageDecoder {
 
       messageSize = in.getInt(msgStart + 2); // The following 4 bytes is the full message size in bytes
 
+      // Reject oversized messages before buffering any of their data
+      if (messageSize < 2 || (maxMessageSize > 0 && messageSize > maxMessageSize)) {
+        MUSUser whatUser = ((SMUSPipeline) ctx.pipeline()).user; // Figure out what user this is
+        MUSLog.Log("Message too large from " + whatUser + ": " + messageSize + " bytes (MaxMessageSize " + maxMessageSize + ")", MUSLog.kMsgErr);
+        whatUser.killMUSUser();
+        in.clear();
+        messageSize = 0;
+        return;
+      }
+
       if (in.readableBytes() + 2 < messageSize) { // +2 = reader index is 8, so we have read 2 bytes of the content already
         // Not enough data available, we have to wait.
 
@@ -78,15 +93,14 @@ public class DecryptionFramer extends ByteToMessageDecoder {
 
     // The data is now fully decrypted and ready to be passed along
 
-    // We could have a max size check here...
-    // if (messageSize > m_movie.getServer().m_props.getIntProperty("MaxMessageSize") )
-    // MUSErrorCode.MessageTooLarge
-
     in.readerIndex(in.readerIndex() - messageSize); // Rewind to start of message data.
 
-    // Trying to optimize and use buffer.readSlice(messageSize) instead will work most of the time
-    // but occasionally generate corrupt messages.
-    ByteBuf msgData = in.readBytes(messageSize);
+    // Pass the decrypted bytes on as a slice of the cumulation buffer, without copying.
+    // A plain readSlice() occasionally generated corrupt messages: nothing kept the cumulation buffer alive,
+    // so the decoder could release or compact it (and decrypt the next message into the same memory)
+    // while the slice was still being handled. The retained slice pins the buffer until the last handler releases it,
+    // and new data is then cumulated into a fresh buffer instead of the shared one.
+    ByteBuf msgData = in.readRetainedSlice(messageSize);
 
     messageSize = 0; // Get ready for the next message
     // (The original buffer's reader index is now consumed properly so the FrameDecoder is happy.)
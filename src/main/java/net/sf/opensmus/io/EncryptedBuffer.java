@@ -0,0 +1,20 @@
+package net.sf.opensmus.io;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * An outgoing message that has already been encrypted with the global key,
+ * e.g. once for all the members of a group. The Encrypter writes it as it is.
+ */
+public class EncryptedBuffer extends DefaultByteBufHolder {
+
+  public EncryptedBuffer(ByteBuf data) {
+    super(data);
+  }
+
+  @Override
+  public EncryptedBuffer replace(ByteBuf content) {
+    return new EncryptedBuffer(content);
+  }
+}
@@ -13,6 +13,12 @@ public class Encrypter extends ChannelOutboundHandlerAdapter {
   // Server sending a message to a user (raw bytes)
   @Override
   public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (msg instanceof EncryptedBuffer) {
+      // Encrypted once for several channels, pass the shared ciphertext along untouched
+      ctx.write(((EncryptedBuffer) msg).content(), promise);
+      return;
+    }
+
     // Always assume only one complete message at a time will be in the buffer.
     ByteBuf inBuffer = (ByteBuf) msg;
 
@@ -132,8 +132,8 @@ public class FloodFilter extends SimpleChannelInboundHandler<ByteBuf> {
       }
     }
 
-    // sendUpstream() -> "It is recommended to use the shortcut methods in Channels rather than calling this method directly"
-    super.channelRead(ctx, inBuffer);
+    // Pass the message on. It is released when this method returns, so keep a reference for the next handler.
+    ctx.fireChannelRead(inBuffer.retain());
   }
 
   private void notifyFloodDisconnect(MUSUser usr) {
@@ -152,7 +152,7 @@ public class FloodFilter extends SimpleChannelInboundHandler<ByteBuf> {
 
     reply.m_recptID.addElement(new MUSMsgHeaderString(usr.name()));
 
-    reply.m_msgContent = new LVoid();
+    reply.m_msgContent = LVoid.VOID;
 
     usr.sendMessage(reply);
   }
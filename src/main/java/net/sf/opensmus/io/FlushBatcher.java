@@ -0,0 +1,74 @@
+package net.sf.opensmus.io;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import java.util.concurrent.TimeUnit;
+import net.sf.opensmus.MUSServer;
+
+/**
+ * Coalesces the outgoing writes of one channel into as few flushes as possible.
+ * <p>
+ * Every write is performed on the channel's event loop. Instead of flushing each message
+ * a flush is scheduled once per burst: it runs when the event loop has finished the work it
+ * is currently doing (e.g. handling an inbound message or a group broadcast), after
+ * MaxFlushLatency milliseconds if configured, or immediately when MaxFlushBatchSize
+ * writes are pending.
+ */
+public class FlushBatcher implements Runnable {
+
+  private final Channel channel;
+  private final MUSServer server;
+  private final int maxBatchSize;
+  private final long maxLatency;
+
+  // Only accessed from the channel's event loop
+  private int pendingWrites = 0;
+  private boolean flushScheduled = false;
+
+  public FlushBatcher(MUSServer srv, Channel ch) {
+    server = srv;
+    channel = ch;
+    maxBatchSize = Math.max(1, srv.m_props.getIntProperty("MaxFlushBatchSize"));
+    maxLatency = Math.max(0, srv.m_props.getIntProperty("MaxFlushLatency"));
+  }
+
+  public void write(Object msg) {
+    EventLoop loop = channel.eventLoop();
+    if (loop.inEventLoop()) {
+      writeNow(msg);
+    } else {
+      loop.execute(() -> writeNow(msg));
+    }
+  }
+
+  private void writeNow(Object msg) {
+    channel.write(msg, channel.voidPromise());
+    server.logWrite();
+
+    if (++pendingWrites >= maxBatchSize) {
+      flushNow();
+      return;
+    }
+
+    if (!flushScheduled) {
+      flushScheduled = true;
+      if (maxLatency > 0)
+        channel.eventLoop().schedule(this, maxLatency, TimeUnit.MILLISECONDS);
+      else
+        channel.eventLoop().execute(this); // Runs after the tasks already queued on this event loop
+    }
+  }
+
+  private void flushNow() {
+    pendingWrites = 0;
+    channel.flush();
+    server.logFlush();
+  }
+
+  // Scheduled flush
+  public void run() {
+    flushScheduled = false;
+    if (pendingWrites > 0)
+      flushNow();
+  }
+}
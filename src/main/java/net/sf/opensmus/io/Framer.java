@@ -11,6 +11,11 @@ import net.sf.opensmus.MUSUser;
 public class Framer extends ByteToMessageDecoder {
 
   int messageSize = 0;
+  final int maxMessageSize;
+
+  public Framer(int maxSize) {
+    maxMessageSize = maxSize;
+  }
 
   @Override
   protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
@@ -29,6 +34,16 @@ public class Framer extends ByteToMessageDecoder {
       }
 
       messageSize = in.readInt(); // Next 4 bytes is full message size in bytes (rest of the data)
+
+      // Reject oversized messages before buffering any of their data
+      if (messageSize < 0 || (maxMessageSize > 0 && messageSize > maxMessageSize)) {
+        MUSUser whatUser = ((SMUSPipeline) ctx.pipeline()).user; // Figure out what user this is
+        MUSLog.Log("Message too large from " + whatUser + ": " + messageSize + " bytes (MaxMessageSize " + maxMessageSize + ")", MUSLog.kMsgErr);
+        whatUser.killMUSUser();
+        in.clear();
+        messageSize = 0;
+        return;
+      }
     }
 
     if (in.readableBytes() < messageSize) {
@@ -36,13 +51,10 @@ public class Framer extends ByteToMessageDecoder {
       return;
     }
 
-    // We could have a max size check here...
-    // if (messageSize > m_movie.getServer().m_props.getIntProperty("MaxMessageSize") )
-    // MUSErrorCode.MessageTooLarge
-
-    // Store the message bytes (stripped of the 2 header bytes and 4 length info bytes) in a new buffer
-    // This also updates the readerIndex of the original buffer, so FrameDecoder will know we consumed the bytes in it.
-    ByteBuf msgData = in.readBytes(messageSize);
+    // Pass the message bytes (stripped of the 2 header bytes and 4 length info bytes) on as a retained slice, without copying.
+    // The slice keeps the cumulation buffer from being released or compacted until the last handler has released it.
+    // This also updates the readerIndex of the original buffer, so the decoder will know we consumed the bytes in it.
+    ByteBuf msgData = in.readRetainedSlice(messageSize);
 
     messageSize = 0; // Get ready for the next message
     out.add(msgData);
@@ -8,6 +8,7 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 
 import java.io.IOException;
+import net.sf.opensmus.LValueDecodeException;
 import net.sf.opensmus.LVoid;
 import net.sf.opensmus.MUSErrorCode;
 import net.sf.opensmus.MUSLog;
@@ -37,23 +38,21 @@ public class IOHandler extends SimpleChannelInboundHandler<ByteBuf> {
     // This can happen when a client disconnects
     // Not sure if this still happens in Netty 3.2.1...
 
-    // Decode the message
-    MUSMessage msg = new MUSMessage(buffer); // The incoming buffer does NOT have the 6 headerbytes (ID & length info)
-
     // Figure out what user this is
     MUSUser whatUser = ((SMUSPipeline) ctx.pipeline()).user;
 
-    // Prevent spoofing of userid by ignoring the parsed senderID !
-    // ALWAYS do this on incoming messages.
+    int size = buffer.readableBytes();
+
+    // Decode the message into a recycled one. The content is left undecoded until needed if LazyContentDecoding is on.
+    // Prevent spoofing of userid by ignoring the parsed senderID: the sender is always set to the name of the user.
     // Only serverside scripts might want to send under a different name and that's only for outgoing messages
     // Remotely connected users are not supposed to be able to change their senderID!
-    msg.m_senderID = new MUSMsgHeaderString(whatUser.name());
+    MUSMessage msg = MUSMessage.newReceived(buffer, whatUser); // The incoming buffer does NOT have the 6 headerbytes (ID & length info)
 
     // ^--- All above from SMUSDecoder
 
-    whatUser.postMessage(msg);
-
-    super.channelRead(ctx, msg);
+    // The dispatcher releases the message when it has been handled
+    whatUser.postMessage(msg, size);
   }
 
   @Override
@@ -75,7 +74,9 @@ public class IOHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     Channel ch = ctx.channel();
     MUSUser whatUser = ((SMUSPipeline) ch.pipeline()).user;
-    if (!(cause instanceof IOException)) {
+    if (cause instanceof LValueDecodeException) {
+      MUSLog.Log("Invalid message content from " + whatUser + ": " + cause.getMessage(), MUSLog.kMsgErr);
+    } else if (!(cause instanceof IOException)) {
       MUSLog.Log("Netty Exception " + cause + " for " + whatUser, MUSLog.kDeb);
       cause.printStackTrace();
     }
@@ -102,7 +103,7 @@ public class IOHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     msg.m_recptID.addElement(new MUSMsgHeaderString(usr.name()));
 
-    msg.m_msgContent = new LVoid();
+    msg.m_msgContent = LVoid.VOID;
 
     usr.sendMessage(msg);
   }
@@ -1,6 +1,7 @@
 package net.sf.opensmus.io;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -28,6 +29,8 @@ public class LogFilter extends ChannelDuplexHandler {
   public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
     if (msg instanceof ByteBuf) {
       m_server.logOutBytes(((ByteBuf) msg).readableBytes());
+    } else if (msg instanceof ByteBufHolder) {
+      m_server.logOutBytes(((ByteBufHolder) msg).content().readableBytes());
     }
 
     super.write(ctx, msg, promise);
@@ -52,7 +52,5 @@ public class LogonHandler extends IOHandler {
     msg.extractMUSMessage(buffer);  // The incoming buffer does NOT have the 6 headerbytes (ID & length info)
 
     m_server.queueLogonMessage(msg, whatUser);
-
-    super.channelRead(ctx, buffer);
   }
 }
\ No newline at end of file
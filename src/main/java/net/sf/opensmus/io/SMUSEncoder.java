@@ -1,16 +1,28 @@
 package net.sf.opensmus.io;
 
-import io.netty.handler.codec.MessageToMessageEncoder;
-import java.util.List;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import net.sf.opensmus.MUSMessage;
 
 @ChannelHandler.Sharable
-public class SMUSEncoder extends MessageToMessageEncoder<MUSMessage> {
+public class SMUSEncoder extends MessageToByteEncoder<MUSMessage> {
+
+  public SMUSEncoder(boolean preferDirect) {
+    super(preferDirect);
+  }
+
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MUSMessage msg, boolean preferDirect) {
+    // The encoded size is known up front, so the pooled buffer never has to grow
+    int size = msg.encodedSize();
+    return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
+  }
+
   @Override
-  protected void encode(ChannelHandlerContext ctx, MUSMessage msg, List<Object> out) {
-    // Return the constructed raw message bytes.
-    out.add(msg.getBytes());
+  protected void encode(ChannelHandlerContext ctx, MUSMessage msg, ByteBuf out) {
+    // Write the message fields straight into the outgoing buffer.
+    msg.writeTo(out);
   }
 }
@@ -17,17 +17,16 @@ public class SMUSPipelineFactory extends ChannelInitializer<Channel> {
 
   public static final ChannelHandler HANDLER = new IOHandler();
   // Stateless, singleton handler instances. Re-used across connections.
-  private static final ChannelHandler ENCODER = new SMUSEncoder();
+  private final ChannelHandler ENCODER;
   public final ChannelHandler LOGGER;
-//    private ExecutionHandler EXECUTOR;
   final ArrayList<ArrayList> antiFloodSettings = new ArrayList<>();
   final boolean useUDP;
   private final MUSServer server;
   private final ChannelGroup channels;
   //private HashedWheelTimer timer;
   private final int idleTimeout;
+  private final int maxMessageSize;
   private final boolean useLogging;
-  //private int threadPoolSize;
   private final boolean allEncryptionEnabled;
   private boolean useFloodProtection = false;
 
@@ -38,16 +37,11 @@ public class SMUSPipelineFactory extends ChannelInitializer<Channel> {
     useUDP = udp;
 
     LOGGER = new LogFilter(server);
-
-//        threadPoolSize = m_server.m_props.getIntProperty("ThreadPoolSize");
-//        if (threadPoolSize > 0) {
-//            int maxMem = m_server.m_props.getIntProperty("MaxUserMemorySize");
-//            int maxTotalMem = m_server.m_props.getIntProperty("MaxTotalMemorySize");
-//            EXECUTOR = new ExecutionHandler(new OrderedMemoryAwareThreadPoolExecutor(threadPoolSize, maxMem, maxTotalMem));
-//        }
+    ENCODER = new SMUSEncoder(server.m_props.getIntProperty("UseDirectBuffers") == 1);
 
     // Look up these properties once instead of every pipeline creation
     idleTimeout = server.m_props.getIntProperty("IdleTimeOut");
+    maxMessageSize = server.m_props.getIntProperty("MaxMessageSize");
     allEncryptionEnabled = server.encryptionKey.startsWith("#All");
     useLogging = server.m_props.getIntProperty("ServerStatusReportInterval") != 0;
 
@@ -77,10 +71,10 @@ public class SMUSPipelineFactory extends ChannelInitializer<Channel> {
       pipeline.addLast("idlehandler", new IdleStateHandler(5, idleTimeout, 0, TimeUnit.SECONDS));
 
     if (allEncryptionEnabled) {
-      pipeline.addLast("decryption", new DecryptionFramer()); // Handles upstream (incoming) messages
+      pipeline.addLast("decryption", new DecryptionFramer(maxMessageSize)); // Handles upstream (incoming) messages
       pipeline.addLast("encryption", new Encrypter()); // Handles downstream (outgoing) messages
     } else {
-      pipeline.addLast("framer", new Framer()); // Frames upstream (incoming) messages
+      pipeline.addLast("framer", new Framer(maxMessageSize)); // Frames upstream (incoming) messages
     }
 
     if (useLogging)
@@ -92,9 +86,7 @@ public class SMUSPipelineFactory extends ChannelInitializer<Channel> {
     // Add encoder (downstream)
     pipeline.addLast("encoder", ENCODER);
 
-    // It's not strictly necessary to use an executor, but will help prevent lag caused by slow/blocking business logic (e.g. server side scripts)
-    //if (threadPoolSize > 0)
-    //    pipeline.addLast("executor", EXECUTOR);
+    // Business logic (e.g. server side scripts) runs on the MUSMessageExecutor thread pool when ThreadPoolSize > 0, see MUSUser.postMessage()
 
     // Add business logic (upstream) ALSO INCLUDES decoder
     if (useUDP) {
@@ -64,7 +64,5 @@ public class UDPIOHandler extends IOHandler {
     /////////////////////////////////
 
     whatUser.postMessage(msg);
-
-    super.channelRead(ctx, buffer);
   }
 }
\ No newline at end of file
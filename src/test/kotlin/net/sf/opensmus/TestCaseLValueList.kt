@@ -0,0 +1,78 @@
+package net.sf.opensmus
+
+import io.netty.buffer.Unpooled
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TestCaseLValueList {
+
+    private fun roundTrip(value: LValue): LValue {
+        val bytes = value.getBytes()
+        val decoded = LValueCodec.read(Unpooled.wrappedBuffer(bytes))
+        assertArrayEquals(bytes, decoded.getBytes())
+        return decoded
+    }
+
+    private fun listOf(vararg values: LValue): LList {
+        val list = LList()
+        for (value in values) list.addElement(value)
+        return list
+    }
+
+    @Test
+    fun testRoundTrip() {
+        roundTrip(listOf(LInteger(1), LInteger(-5), LInteger(100000)))
+        roundTrip(listOf(LFloat(1.5), LFloat(-2.25)))
+        roundTrip(listOf(L3dVector(1f, 2f, 3f), L3dVector(4f, 5f, 6f)))
+        roundTrip(listOf(LPoint(LInteger(1), LInteger(2)), LPoint(LInteger(3), LInteger(4))))
+        roundTrip(listOf(LInteger(1), LFloat(2.0), LString("three")))
+
+        val props = LPropList()
+        props.addElement(LSymbol("a"), LInteger(1))
+        props.addElement(LSymbol("b"), LPoint(LInteger(2), LInteger(3)))
+        roundTrip(props)
+    }
+
+    @Test
+    fun testMutablePointStaysInList() {
+        val list = roundTrip(listOf(LPoint(LInteger(1), LInteger(2)), LPoint(LInteger(3), LInteger(4)))) as LList
+
+        val point = list.getElementAt(0) as LPoint
+        assertSame(point, list.getElementAt(0))
+        point.m_X = LInteger(10)
+
+        assertEquals(10, (list.getElementAt(0) as LPoint).m_X.toInteger())
+        val decoded = roundTrip(list) as LList
+        assertEquals(10, (decoded.getElementAt(0) as LPoint).m_X.toInteger())
+    }
+
+    @Test
+    fun testReadDoesNotChangeEncoding() {
+        val list = roundTrip(listOf(LFloat(1.5), L3dVector(1f, 2f, 3f))) as LList
+        val before = list.getBytes()
+        for (n in 0 until list.count()) list.getElementAt(n)
+        assertArrayEquals(before, list.getBytes())
+    }
+
+    @Test
+    fun testMutatePackedIntegerList() {
+        val list = roundTrip(listOf(LInteger(1), LInteger(2), LInteger(3))) as LList
+
+        assertTrue(list.setElementAt(1, LInteger(20)))
+        assertEquals(20, list.getElementAt(1).toInteger())
+
+        // Adding an element of another type keeps the elements already in the list
+        list.addElement(LString("four"))
+        assertEquals(LValue.vt_String, list.getElementAt(3).getType())
+        list.m_list.removeAt(0)
+
+        val decoded = roundTrip(list) as LList
+        assertEquals(3, decoded.count())
+        assertEquals(20, decoded.getElementAt(0).toInteger())
+        assertEquals(3, decoded.getElementAt(1).toInteger())
+        assertEquals("four", decoded.getElementAt(2).toString())
+    }
+}
@@ -0,0 +1,67 @@
+package net.sf.opensmus
+
+import io.netty.buffer.Unpooled
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class TestCaseSharedValues {
+
+    private val symbol = LSymbol.intern("sharedValuesTest")
+
+    private fun assertSharedUnchanged() {
+        assertEquals(0, LInteger.valueOf(0).toInteger())
+        assertEquals(LValue.vt_Integer, LInteger.valueOf(0).getType())
+        assertEquals(LValue.vt_Void, LVoid.VOID.getType())
+        assertSame(symbol, LSymbol.intern("sharedValuesTest"))
+        assertEquals("#sharedValuesTest", symbol.toString())
+        assertEquals(LValue.vt_Symbol, symbol.getType())
+    }
+
+    @Test
+    fun testDecodeUserLevel() {
+        // Same steps as MUSDBConnection.getDBUserLevel() on a stored level
+        val stored = LInteger.valueOf(80).getBytes()
+        val lvl = LInteger()
+        lvl.extractFromBytes(stored, 2)
+
+        assertEquals(80, lvl.toInteger())
+        assertNotSame(LInteger.valueOf(80), lvl)
+        assertSharedUnchanged()
+    }
+
+    @Test
+    fun testDecodeMessageContent() {
+        val list = LList()
+        list.addElement(LInteger.valueOf(7))
+        list.addElement(LVoid.VOID)
+        list.addElement(symbol)
+        val bytes = list.getBytes()
+
+        val content = MUSMsgContent()
+        content.extractFromBytes(bytes)
+        val decoded = LValueCodec.read(Unpooled.wrappedBuffer(bytes)) as LList
+
+        assertEquals(list.toString(), content.m_list[0].toString())
+        assertEquals(list.toString(), decoded.toString())
+        assertNotSame(symbol, decoded.getElementAt(2))
+        assertSharedUnchanged()
+    }
+
+    @Test
+    fun testSharedValuesCantBeDecodedInto() {
+        val integer = LInteger(5).getBytes()
+        val name = LSymbol("other").getBytes()
+
+        assertThrows(UnsupportedOperationException::class.java) { LInteger.valueOf(0).extractFromBytes(integer, 2) }
+        assertThrows(UnsupportedOperationException::class.java) { LVoid.VOID.setType(LValue.vt_Integer) }
+        assertThrows(UnsupportedOperationException::class.java) { symbol.extractFromBytes(name, 2) }
+        assertThrows(UnsupportedOperationException::class.java) {
+            symbol.readFrom(Unpooled.wrappedBuffer(name, 2, name.size - 2))
+        }
+        assertThrows(UnsupportedOperationException::class.java) { symbol.setType(LValue.vt_String) }
+        assertSharedUnchanged()
+    }
+}